@@ -0,0 +1,97 @@
+package org.rommert.trie.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rommert.trie.impl.Node;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batches of lookups and inserts, one by one against the batch methods that walk shared prefixes once. A random
+ * batch takes keys from anywhere in the trie; a clustered batch takes a run of neighbouring keys, like the items on
+ * one page or under one URL path, so consecutive keys share most of their path. One operation is one key
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    private static final int SIZE = 200_000;
+    private static final int BATCH = 500;
+
+    @Param({"url", "english"})
+    private String corpus;
+
+    @Param({"random", "clustered"})
+    private String batchKind;
+
+    private Node<Integer> trie;
+    private List<List<String>> batches;
+    private List<Map<String, Integer>> insertBatches;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> keys = Corpus.byName(corpus, SIZE, 42);
+        trie = new Node<>();
+        for (int i = 0; i < keys.size(); i++) {
+            trie.insert(keys.get(i), i);
+        }
+        batches = new ArrayList<>();
+        insertBatches = new ArrayList<>();
+        List<String> sortedKeys = new ArrayList<>(keys);
+        Collections.sort(sortedKeys);
+        Random random = new Random(3);
+        for (int b = 0; b < 64; b++) {
+            List<String> batch = new ArrayList<>(BATCH);
+            Map<String, Integer> insertBatch = new HashMap<>();
+            int start = random.nextInt(keys.size() - BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                String key = batchKind.equals("random") ? keys.get(random.nextInt(keys.size())) : sortedKeys.get(start + i);
+                batch.add(key);
+            }
+            // a request doesn't come sorted
+            Collections.shuffle(batch, random);
+            for (String key : batch) {
+                insertBatch.put(key + "/new", insertBatch.size());
+            }
+            batches.add(batch);
+            insertBatches.add(insertBatch);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Map<String, List<Integer>> searchOneByOne() {
+        Map<String, List<Integer>> results = new HashMap<>();
+        for (String key : batches.get(next++ & 63)) {
+            results.put(key, trie.search(key));
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Map<String, List<Integer>> searchAll() {
+        return trie.searchAll(batches.get(next++ & 63));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Node<Integer> insertOneByOne() {
+        Node<Integer> fresh = new Node<>();
+        insertBatches.get(next++ & 63).forEach(fresh::insert);
+        return fresh;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Node<Integer> insertAll() {
+        Node<Integer> fresh = new Node<>();
+        fresh.insertAll(insertBatches.get(next++ & 63));
+        return fresh;
+    }
+}
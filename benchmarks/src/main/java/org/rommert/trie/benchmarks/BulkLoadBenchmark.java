@@ -0,0 +1,67 @@
+package org.rommert.trie.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rommert.trie.impl.Node;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a Node trie from a key set: one insert per key, a single bottom-up pass over the sorted keys, and the
+ * parallel bottom-up build. One operation is one key
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkLoadBenchmark {
+
+    private static final int SIZE = 200_000;
+
+    @Param({"english", "dutch", "url"})
+    private String corpus;
+
+    private List<Map.Entry<String, Integer>> entries;
+    private List<Map.Entry<String, Integer>> sortedEntries;
+
+    @Setup
+    public void setup() {
+        List<String> keys = Corpus.byName(corpus, SIZE, 42);
+        entries = new ArrayList<>(SIZE);
+        for (int i = 0; i < keys.size(); i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(keys.get(i), i));
+        }
+        sortedEntries = new ArrayList<>(entries);
+        sortedEntries.sort(Map.Entry.comparingByKey());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Node<Integer> insertOneByOne() {
+        Node<Integer> root = new Node<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            root.insert(entry.getKey(), entry.getValue());
+        }
+        return root;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Node<Integer> fromSorted() {
+        return Node.fromSorted(sortedEntries.iterator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Node<Integer> fromUnsorted() {
+        return Node.fromUnsorted(entries.stream());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Node<Integer> fromSortedParallel() {
+        return Node.fromSortedParallel(sortedEntries);
+    }
+}
@@ -0,0 +1,54 @@
+package org.rommert.trie.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delete-heavy churn on a loaded trie: every operation deletes a random key and inserts it again, which exercises
+ * the split and collapse paths of the trie rather than plain lookups
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChurnBenchmark {
+
+    private static final int CHURN_KEYS = 1 << 16;
+
+    @Param({"node", "array", "concurrent"})
+    private String implementation;
+
+    @Param({"english", "dutch", "url"})
+    private String corpus;
+
+    @Param({"100000"})
+    private int size;
+
+    private Trie<Integer> trie;
+    private String[] churn;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> keys = Corpus.byName(corpus, size, 42);
+        trie = Tries.load(implementation, keys);
+        Random random = new Random(11);
+        churn = new String[CHURN_KEYS];
+        for (int i = 0; i < CHURN_KEYS; i++) {
+            churn[i] = keys.get(random.nextInt(keys.size()));
+        }
+    }
+
+    @Benchmark
+    public void deleteAndReinsert() {
+        String key = churn[next++ & (CHURN_KEYS - 1)];
+        trie.delete(key);
+        trie.insert(key, next);
+    }
+}
@@ -0,0 +1,179 @@
+package org.rommert.trie.benchmarks;
+
+import java.util.*;
+
+/**
+ * Generates reproducible key sets for the benchmarks. Words are glued together from language-like syllables, which
+ * gives the shared prefixes and suffixes of a real dictionary without shipping one. All generators return distinct
+ * keys in random order; the same seed gives the same keys in the same order
+ */
+public final class Corpus {
+
+    private static final String[] DUTCH_SYLLABLES = {
+            "ver", "be", "ge", "ont", "her", "over", "on", "aan", "af", "door", "in", "op", "uit", "voor", "mee",
+            "na", "om", "toe", "weg", "bij", "sla", "ma", "ke", "lo", "pen", "den", "ten", "ren", "len", "men",
+            "ning", "heid", "lijk", "ig", "baar", "schap", "dom", "sel", "er", "aar", "st", "tje", "pje", "kje",
+            "hond", "vos", "huis", "boom", "water", "land", "zee", "weg", "berg", "stad", "dorp", "kerk", "school",
+            "raad", "werk", "tijd", "dag", "nacht", "licht", "kracht", "wind", "vuur", "steen", "hout", "ijzer"
+    };
+
+    private static final String[] ENGLISH_SYLLABLES = {
+            "un", "re", "in", "dis", "en", "non", "over", "mis", "sub", "pre", "inter", "fore", "de", "trans",
+            "super", "semi", "anti", "mid", "under", "ing", "ed", "ly", "er", "ion", "tion", "ation", "ness",
+            "ment", "ful", "less", "able", "ible", "al", "ive", "ous", "ist", "ity", "ty", "ship", "hood",
+            "house", "fox", "dog", "tree", "water", "land", "sea", "way", "hill", "town", "work", "time", "day",
+            "night", "light", "wind", "fire", "stone", "wood", "iron", "book", "hand", "head", "port", "form"
+    };
+
+    private static final String[] HOSTS = {
+            "https://www.example.com/", "https://shop.example.com/", "https://api.example.org/v1/",
+            "https://api.example.org/v2/", "http://intranet.example.net/"
+    };
+
+    private static final String[] PATH_SEGMENTS = {
+            "products", "categories", "users", "orders", "search", "account", "settings", "articles", "2023", "2024",
+            "en", "nl", "images", "static", "detail", "list", "edit", "archive", "tags", "reviews"
+    };
+
+    private Corpus() {
+    }
+
+    public static List<String> dutch(int size, long seed) {
+        return words(DUTCH_SYLLABLES, size, seed);
+    }
+
+    public static List<String> english(int size, long seed) {
+        return words(ENGLISH_SYLLABLES, size, seed);
+    }
+
+    /**
+     * URL-like keys: a handful of hosts and path segments followed by an id, so keys share long prefixes
+     */
+    public static List<String> urls(int size, long seed) {
+        Random random = new Random(seed);
+        Set<String> urls = new LinkedHashSet<>(size * 2);
+        StringBuilder url = new StringBuilder();
+        while (urls.size() < size) {
+            url.setLength(0);
+            url.append(HOSTS[random.nextInt(HOSTS.length)]);
+            int segments = 1 + random.nextInt(4);
+            for (int i = 0; i < segments; i++) {
+                url.append(PATH_SEGMENTS[random.nextInt(PATH_SEGMENTS.length)]).append('/');
+            }
+            url.append(random.nextInt(100_000));
+            urls.add(url.toString());
+        }
+        return new ArrayList<>(urls);
+    }
+
+    /**
+     * Long keys that only branch a little at every level: a path of 8 to 16 steps, each one of 3 short syllables,
+     * so nodes have few children but lookups go deep
+     */
+    public static List<String> deep(int size, long seed) {
+        Random random = new Random(seed);
+        String[] steps = {"a", "bo", "cel"};
+        Set<String> keys = new LinkedHashSet<>(size * 2);
+        StringBuilder key = new StringBuilder();
+        while (keys.size() < size) {
+            key.setLength(0);
+            int length = 8 + random.nextInt(9);
+            for (int i = 0; i < length; i++) {
+                key.append(steps[random.nextInt(steps.length)]);
+            }
+            keys.add(key.toString());
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Short keys over all 62 letters and digits, so the top levels of the trie have dozens of children per node
+     */
+    public static List<String> wide(int size, long seed) {
+        String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+        Random random = new Random(seed);
+        Set<String> keys = new LinkedHashSet<>(size * 2);
+        StringBuilder key = new StringBuilder();
+        while (keys.size() < size) {
+            key.setLength(0);
+            int length = 3 + random.nextInt(3);
+            for (int i = 0; i < length; i++) {
+                key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            keys.add(key.toString());
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * @param name one of english, dutch, url, deep or wide
+     */
+    public static List<String> byName(String name, int size, long seed) {
+        switch (name) {
+            case "english":
+                return english(size, seed);
+            case "dutch":
+                return dutch(size, seed);
+            case "url":
+                return urls(size, seed);
+            case "deep":
+                return deep(size, seed);
+            case "wide":
+                return wide(size, seed);
+            default:
+                throw new IllegalArgumentException("unknown corpus " + name);
+        }
+    }
+
+    /**
+     * Running text made of words drawn from the given vocabulary with a Zipfian frequency, separated by spaces and
+     * the occasional punctuation mark
+     */
+    public static String text(List<String> vocabulary, int nrOfWords, long seed) {
+        int[] ranks = zipfian(vocabulary.size(), nrOfWords, seed);
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(nrOfWords * 8);
+        for (int rank : ranks) {
+            text.append(vocabulary.get(rank));
+            text.append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Samples ranks 0 (most frequent) to n - 1 with probability proportional to 1 / (rank + 1), which is roughly how
+     * word frequencies and query popularity are distributed
+     * @param n number of distinct ranks
+     * @param count number of samples
+     */
+    public static int[] zipfian(int n, int count, long seed) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] samples = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            samples[i] = Math.min(n - 1, index >= 0 ? index : -index - 1);
+        }
+        return samples;
+    }
+
+    private static List<String> words(String[] syllables, int size, long seed) {
+        Random random = new Random(seed);
+        Set<String> words = new LinkedHashSet<>(size * 2);
+        StringBuilder word = new StringBuilder();
+        while (words.size() < size) {
+            word.setLength(0);
+            int count = 1 + random.nextInt(5);
+            for (int i = 0; i < count; i++) {
+                word.append(syllables[random.nextInt(syllables.length)]);
+            }
+            words.add(word.toString());
+        }
+        return new ArrayList<>(words);
+    }
+}
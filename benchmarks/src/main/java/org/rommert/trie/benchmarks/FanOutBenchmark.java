@@ -0,0 +1,63 @@
+package org.rommert.trie.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Child dispatch of the adaptive radix tree against the child map of Node. Deep keys make every lookup visit many
+ * nodes with two or three children; wide keys visit few nodes with dozens of children. One operation is one lookup
+ * or one insert
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FanOutBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"node", "adaptive"})
+    private String implementation;
+
+    @Param({"deep", "wide"})
+    private String corpus;
+
+    private static final int SIZE = 200_000;
+
+    private List<String> keys;
+    private Trie<Integer> trie;
+    private String[] lookups;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setup() {
+        keys = Corpus.byName(corpus, SIZE, 42);
+        trie = Tries.load(implementation, keys);
+        int[] ranks = Corpus.zipfian(keys.size(), LOOKUPS, 7);
+        lookups = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = keys.get(ranks[i]);
+        }
+    }
+
+    @Benchmark
+    public List<Integer> search(Cursor cursor) {
+        return trie.search(lookups[cursor.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(SIZE)
+    public Trie<Integer> load() {
+        return Tries.load(implementation, keys);
+    }
+}
@@ -0,0 +1,39 @@
+package org.rommert.trie.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rommert.trie.Indexer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full text indexing with the Indexer. The text has a Zipfian word distribution, so most words repeat and most
+ * inserts append a position to an existing word. One operation is one indexed word
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexerBenchmark {
+
+    private static final int WORDS_IN_TEXT = 200_000;
+
+    @Param({"english", "dutch"})
+    private String corpus;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = Corpus.text(Corpus.byName(corpus, 20_000, 42), WORDS_IN_TEXT, 3);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS_IN_TEXT)
+    public Indexer index() {
+        Indexer indexer = new Indexer();
+        indexer.index(text);
+        return indexer;
+    }
+}
@@ -0,0 +1,40 @@
+package org.rommert.trie.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput when loading a key set into an empty trie. One operation is one insert
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InsertBenchmark {
+
+    private static final int SIZE = 200_000;
+
+    @Param({"node", "array", "concurrent"})
+    private String implementation;
+
+    @Param({"english", "dutch", "url"})
+    private String corpus;
+
+    private List<String> keys;
+
+    @Setup
+    public void setup() {
+        keys = Corpus.byName(corpus, SIZE, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Trie<Integer> load() {
+        return Tries.load(implementation, keys);
+    }
+}
@@ -0,0 +1,134 @@
+package org.rommert.trie.benchmarks;
+
+import org.rommert.trie.impl.ArrayTrie;
+import org.rommert.trie.impl.IntTrie;
+import org.rommert.trie.impl.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap the tries retain, as the growth of the used heap after a full collection, and prints the tables
+ * of the README. Run it with a fixed heap and the serial collector, so the used heap after a collection is exact:
+ * <pre>
+ * java -Xms3g -Xmx3g -XX:+UseSerialGC -cp target/benchmarks.jar org.rommert.trie.benchmarks.MemoryFootprint
+ * </pre>
+ */
+public final class MemoryFootprint {
+
+    private static final int RANDOM_KEYS = 1_000_000;
+    private static final int DUTCH_KEYS = 200_000;
+    private static final int VOCABULARY = 50_000;
+    private static final int POSITIONS = 5_000_000;
+
+    // keeps the tries of one table reachable, so a FrozenTrie or DawgTrie is measured next to its Node
+    private static final List<Object> retained = new ArrayList<>();
+
+    private MemoryFootprint() {
+    }
+
+    public static void main(String[] args) {
+        Integer value = 1;
+
+        List<String> randomKeys = randomKeys(RANDOM_KEYS, 42);
+        System.out.println("Memory per key, " + RANDOM_KEYS + " random lowercase keys of 4-12 characters");
+        System.out.println("| Implementation | bytes per key |");
+        Node<Integer> node = measure("Node", RANDOM_KEYS, () -> {
+            Node<Integer> trie = new Node<>();
+            randomKeys.forEach(key -> trie.insert(key, value));
+            return trie;
+        });
+        measure("ArrayTrie", RANDOM_KEYS, () -> {
+            ArrayTrie<Integer> trie = new ArrayTrie<>();
+            randomKeys.forEach(key -> trie.insert(key, value));
+            return trie;
+        });
+        measure("FrozenTrie", RANDOM_KEYS, node::snapshot);
+        measure("DawgTrie", RANDOM_KEYS, node::minimize);
+        release();
+
+        List<String> dutchKeys = Corpus.dutch(DUTCH_KEYS, 42);
+        System.out.println();
+        System.out.println("Memory per key, " + DUTCH_KEYS + " Dutch-like keys");
+        System.out.println("| Implementation | bytes per key |");
+        Node<Integer> dutch = measure("Node", DUTCH_KEYS, () -> {
+            Node<Integer> trie = new Node<>();
+            dutchKeys.forEach(key -> trie.insert(key, value));
+            return trie;
+        });
+        measure("FrozenTrie", DUTCH_KEYS, dutch::snapshot);
+        measure("DawgTrie", DUTCH_KEYS, dutch::minimize);
+        release();
+
+        List<String> vocabulary = Corpus.dutch(VOCABULARY, 42);
+        int[] ranks = Corpus.zipfian(VOCABULARY, POSITIONS, 3);
+        System.out.println();
+        System.out.println("Indexer workload, " + POSITIONS + " positions of a Zipfian stream over " + VOCABULARY
+                + " words");
+        System.out.println("| Implementation | bytes per position |");
+        measure("Node<Integer>", POSITIONS, () -> {
+            Node<Integer> trie = new Node<>();
+            for (int i = 0; i < ranks.length; i++) {
+                trie.insert(vocabulary.get(ranks[i]), i);
+            }
+            return trie;
+        });
+        release();
+        measure("IntTrie", POSITIONS, () -> positions(vocabulary, ranks));
+        release();
+        measure("IntTrie, frozen", POSITIONS, () -> {
+            IntTrie trie = positions(vocabulary, ranks);
+            trie.freeze();
+            return trie;
+        });
+        release();
+    }
+
+    private static <T> T measure(String implementation, int count, Supplier<T> build) {
+        long before = usedHeap();
+        T trie = build.get();
+        retained.add(trie);
+        long after = usedHeap();
+        System.out.printf("| %-15s | %13.1f |%n", implementation, (after - before) / (double) count);
+        return trie;
+    }
+
+    private static void release() {
+        retained.clear();
+    }
+
+    private static IntTrie positions(List<String> vocabulary, int[] ranks) {
+        IntTrie trie = new IntTrie();
+        for (int i = 0; i < ranks.length; i++) {
+            trie.insert(vocabulary.get(ranks[i]), i);
+        }
+        return trie;
+    }
+
+    private static List<String> randomKeys(int size, long seed) {
+        Random random = new Random(seed);
+        List<String> keys = new ArrayList<>(size);
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            key.setLength(0);
+            for (int j = 4 + random.nextInt(9); j > 0; j--) {
+                key.append((char) ('a' + random.nextInt(26)));
+            }
+            keys.add(key.toString());
+        }
+        return keys;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // a collection can free what finalization or reference processing left over from the one before
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
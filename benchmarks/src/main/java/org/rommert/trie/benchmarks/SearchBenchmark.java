@@ -0,0 +1,64 @@
+package org.rommert.trie.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups against a loaded trie. Hits follow a Zipfian popularity, so a few keys are looked up very often, like
+ * real query traffic. Misses are keys that share prefixes with the loaded keys but are not in the trie themselves
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"node", "array", "concurrent", "cached"})
+    private String implementation;
+
+    @Param({"english", "dutch", "url"})
+    private String corpus;
+
+    @Param({"200000"})
+    private int size;
+
+    private Trie<Integer> trie;
+    private String[] hits;
+    private String[] misses;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setup() {
+        List<String> keys = Corpus.byName(corpus, size, 42);
+        trie = Tries.load(implementation, keys);
+        int[] ranks = Corpus.zipfian(keys.size(), LOOKUPS, 7);
+        hits = new String[LOOKUPS];
+        misses = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String key = keys.get(ranks[i]);
+            hits[i] = key;
+            misses[i] = key + "#";
+        }
+    }
+
+    @Benchmark
+    public List<Integer> searchZipfianHit(Cursor cursor) {
+        return trie.search(hits[cursor.next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public List<Integer> searchMiss(Cursor cursor) {
+        return trie.search(misses[cursor.next++ & (LOOKUPS - 1)]);
+    }
+}
@@ -0,0 +1,91 @@
+package org.rommert.trie.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rommert.trie.impl.ConcurrentTrie;
+import org.rommert.trie.impl.Node;
+import org.rommert.trie.impl.ShardedTrie;
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest scaling: threads producers load 200,000 keys into an empty trie, each its own slice. A sharded trie gets a
+ * shard per producer, a concurrent trie is shared, and a node is shared behind one lock. One operation is one key
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedInsertBenchmark {
+
+    private static final int SIZE = 200_000;
+
+    @Param({"sharded", "concurrent", "locked"})
+    private String implementation;
+
+    @Param({"english", "dutch"})
+    private String corpus;
+
+    @Param({"1", "4", "16", "32"})
+    private int threads;
+
+    private List<String> keys;
+
+    @Setup
+    public void setup() {
+        keys = Corpus.byName(corpus, SIZE, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Trie<Integer> load() throws InterruptedException {
+        Trie<Integer> trie = create();
+        List<Thread> producers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int from = SIZE * t / threads;
+            int to = SIZE * (t + 1) / threads;
+            Thread producer = new Thread(() -> {
+                for (int i = from; i < to; i++) {
+                    trie.insert(keys.get(i), i);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        if (trie instanceof ShardedTrie) {
+            // inserts are only done when applied
+            ((ShardedTrie<Integer>) trie).close();
+        }
+        return trie;
+    }
+
+    private Trie<Integer> create() {
+        switch (implementation) {
+            case "sharded":
+                return new ShardedTrie<>(threads);
+            case "concurrent":
+                return new ConcurrentTrie<>();
+            case "locked":
+                return new LockedNode();
+            default:
+                throw new IllegalArgumentException("unknown trie implementation " + implementation);
+        }
+    }
+
+    /**
+     * A node shared by all producers, the baseline a sharded trie has to beat
+     */
+    private static final class LockedNode extends Node<Integer> {
+        @Override
+        public synchronized void insert(String word, Integer data) {
+            super.insert(word, data);
+        }
+    }
+}
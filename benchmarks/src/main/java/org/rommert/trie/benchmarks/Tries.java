@@ -0,0 +1,45 @@
+package org.rommert.trie.benchmarks;
+
+import org.rommert.trie.impl.AdaptiveTrie;
+import org.rommert.trie.impl.ArrayTrie;
+import org.rommert.trie.impl.CachingTrie;
+import org.rommert.trie.impl.ConcurrentTrie;
+import org.rommert.trie.impl.Node;
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.List;
+
+/**
+ * Creates the trie implementations under test by the name used in benchmark parameters
+ */
+public final class Tries {
+
+    private Tries() {
+    }
+
+    public static <D> Trie<D> create(String implementation) {
+        switch (implementation) {
+            case "node":
+                return new Node<>();
+            case "array":
+                return new ArrayTrie<>();
+            case "concurrent":
+                return new ConcurrentTrie<>();
+            case "adaptive":
+                return new AdaptiveTrie<>();
+            case "cached":
+                // room for 1% of the 200,000 keys of the benchmarks
+                return new CachingTrie<>(new Node<>(), 2000);
+            default:
+                throw new IllegalArgumentException("unknown trie implementation " + implementation);
+        }
+    }
+
+    public static Trie<Integer> load(String implementation, List<String> keys) {
+        Trie<Integer> trie = create(implementation);
+        for (int i = 0; i < keys.size(); i++) {
+            trie.insert(keys.get(i), i);
+        }
+        return trie;
+    }
+}
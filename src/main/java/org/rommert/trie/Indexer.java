@@ -1,14 +1,42 @@
 package org.rommert.trie;
 
-import org.rommert.trie.impl.Node;
+import org.rommert.trie.impl.IntTrie;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds one trie of word positions over any number of documents. Documents are read as streams and tokenized on
+ * the fly, so their size is not limited by memory. Positions are stored as ints that run on from one document to
+ * the next; the document table translates them back to a (docId, offset) posting
+ */
 public class Indexer {
 
-    private Node<Integer> node;
+    private final IntTrie node = new IntTrie();
+    private final List<Document> documents = new ArrayList<>();
+    private int nrOfWords;
+    // built on first use, dropped when a document is added
+    private SuffixIndex suffixIndex;
 
-    public static void main( String[] args ) {
+    public static void main( String[] args ) throws IOException, InterruptedException {
         Indexer indexer = new Indexer();
-        indexer.indexText(indexer);
+        if (args.length == 0) {
+            indexer.indexText(indexer);
+            return;
+        }
+        List<Path> paths = new ArrayList<>();
+        for (String arg : args) {
+            paths.add(Paths.get(arg));
+        }
+        indexer.indexFiles(paths, Runtime.getRuntime().availableProcessors());
+        System.out.println("indexed " + indexer.getNrOfWords() + " words in " + indexer.documents.size() + " documents");
     }
 
     private void indexText(Indexer indexer) {
@@ -23,14 +51,215 @@ public class Indexer {
         System.out.println(node.toDOTString());
     }
 
-    public void index(String textInput) {
-        String standardized = textInput.replaceAll("[^a-zA-Z ]", "").toLowerCase();
-        String[] words = standardized.split(" ");
-        node = new Node<>();
-        int wordCounter = 0;
+    /**
+     * Index a text as a new document
+     * @return the docId of the document
+     */
+    public int index(String textInput) {
+        try {
+            return index(new StringReader(textInput), "text");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Index UTF-8 text from a stream as a new document. The stream is not closed
+     * @return the docId of the document
+     */
+    public int index(InputStream input, String name) throws IOException {
+        return index(new InputStreamReader(input, StandardCharsets.UTF_8), name);
+    }
+
+    /**
+     * Index text from a reader as a new document. The reader is not closed
+     * @return the docId of the document
+     */
+    public synchronized int index(Reader reader, String name) throws IOException {
+        return merge(indexDocument(reader, name));
+    }
+
+    /**
+     * Index files, and all regular files below directories, as separate documents. A pool of workers tokenizes and
+     * indexes the files on their own; their results are merged into the trie in the order of the files, so
+     * document ids and positions don't depend on timing. Only a few finished documents wait for merging at any time.
+     * Afterwards the positions in the trie are compressed, see {@link IntTrie#freeze()}
+     * @param paths files and directories to index
+     * @param threads number of workers
+     * @return the docIds of the files in order
+     */
+    public synchronized List<Integer> indexFiles(Collection<Path> paths, int threads) throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                files.addAll(walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+            }
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<Future<DocumentIndex>> pending = new ArrayDeque<>();
+            List<Integer> docIds = new ArrayList<>();
+            for (Path file : files) {
+                pending.add(workers.submit(() -> indexFile(file)));
+                if (pending.size() >= 2 * threads) {
+                    docIds.add(merge(await(pending.poll())));
+                }
+            }
+            while (!pending.isEmpty()) {
+                docIds.add(merge(await(pending.poll())));
+            }
+            node.freeze();
+            return docIds;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Search for a word in all indexed documents. The word is normalized like the indexed words, so case and the way
+     * accents are typed don't matter
+     * @return Postings in order of document and offset
+     */
+    public synchronized List<Posting> search(String query) {
+        String word = Tokenizer.normalize(query);
+        List<Posting> postings = new ArrayList<>(node.count(word));
+        node.positions(word).forEachRemaining((int position) -> postings.add(toPosting(position)));
+        return postings;
+    }
+
+    /**
+     * Search for all words that contain a fragment, for example "raad" finds "raad", "raadhuis" and "gemeenteraad".
+     * The fragment is normalized like the indexed words
+     * @return Postings of all those words, in order of document and offset
+     */
+    public synchronized List<Posting> searchContaining(String fragment) {
+        List<String> words = getSuffixIndex().wordsContaining(Tokenizer.normalize(fragment));
+        int count = 0;
         for (String word : words) {
-            node.insert(word, wordCounter);
-            wordCounter++;
+            count += node.count(word);
+        }
+        int[] positions = new int[count];
+        int i = 0;
+        for (String word : words) {
+            for (PrimitiveIterator.OfInt wordPositions = node.positions(word); wordPositions.hasNext(); ) {
+                positions[i++] = wordPositions.nextInt();
+            }
+        }
+        Arrays.sort(positions);
+        List<Posting> postings = new ArrayList<>(count);
+        for (int position : positions) {
+            postings.add(toPosting(position));
+        }
+        return postings;
+    }
+
+    /**
+     * @return index of all suffixes of the indexed words, built when it's first needed after adding documents
+     */
+    public synchronized SuffixIndex getSuffixIndex() {
+        if (suffixIndex == null) {
+            suffixIndex = SuffixIndex.of(node.keysWithPrefix("").collect(Collectors.toList()));
+        }
+        return suffixIndex;
+    }
+
+    /**
+     * @return the trie with the positions of all indexed words, see {@link #toPosting(int)}
+     */
+    public IntTrie getTrie() {
+        return node;
+    }
+
+    /**
+     * Translates a position stored in the trie to the document and offset within that document
+     */
+    public synchronized Posting toPosting(int position) {
+        int low = 0;
+        int high = documents.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (documents.get(middle).firstPosition <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        Document document = documents.get(low);
+        return new Posting(low, position - document.firstPosition);
+    }
+
+    public synchronized String getDocumentName(int docId) {
+        return documents.get(docId).name;
+    }
+
+    public synchronized int getNrOfWords() {
+        return nrOfWords;
+    }
+
+    private DocumentIndex indexFile(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return indexDocument(reader, file.toString());
+        }
+    }
+
+    /**
+     * Indexes one document on its own, with offsets relative to the start of the document
+     */
+    private static DocumentIndex indexDocument(Reader reader, String name) throws IOException {
+        IntTrie local = new IntTrie();
+        int[] offset = {0};
+        int nrOfWords = new Tokenizer().tokenize(reader, word -> local.insert(word, offset[0]++));
+        return new DocumentIndex(name, local, nrOfWords);
+    }
+
+    /**
+     * Adds a separately indexed document to the trie, shifting its offsets to positions after all earlier documents
+     * @return the docId of the document
+     */
+    private int merge(DocumentIndex index) {
+        if ((long) nrOfWords + index.nrOfWords > Integer.MAX_VALUE) {
+            throw new IllegalStateException("more than " + Integer.MAX_VALUE + " words can't be indexed");
+        }
+        int firstPosition = nrOfWords;
+        index.trie.keysWithPrefix("").forEach(word -> index.trie.positions(word)
+                .forEachRemaining((int offset) -> node.insert(word, firstPosition + offset)));
+        documents.add(new Document(index.name, firstPosition));
+        nrOfWords += index.nrOfWords;
+        suffixIndex = null;
+        return documents.size() - 1;
+    }
+
+    private static DocumentIndex await(Future<DocumentIndex> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("indexing failed", e.getCause());
+        }
+    }
+
+    private static class Document {
+        private final String name;
+        private final int firstPosition;
+
+        private Document(String name, int firstPosition) {
+            this.name = name;
+            this.firstPosition = firstPosition;
+        }
+    }
+
+    private static class DocumentIndex {
+        private final String name;
+        private final IntTrie trie;
+        private final int nrOfWords;
+
+        private DocumentIndex(String name, IntTrie trie, int nrOfWords) {
+            this.name = name;
+            this.trie = trie;
+            this.nrOfWords = nrOfWords;
         }
     }
 }
@@ -0,0 +1,47 @@
+package org.rommert.trie;
+
+import java.util.Objects;
+
+/**
+ * Occurrence of a word: the document it occurs in and its position, counted in words, within that document
+ */
+public final class Posting {
+
+    private final int docId;
+    private final int offset;
+
+    public Posting(int docId, int offset) {
+        this.docId = docId;
+        this.offset = offset;
+    }
+
+    public int getDocId() {
+        return docId;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Posting)) {
+            return false;
+        }
+        Posting posting = (Posting) o;
+        return docId == posting.docId && offset == posting.offset;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(docId, offset);
+    }
+
+    @Override
+    public String toString() {
+        return docId + ":" + offset;
+    }
+}
@@ -0,0 +1,92 @@
+package org.rommert.trie;
+
+import org.rommert.trie.impl.FrozenTrie;
+import org.rommert.trie.impl.Node;
+
+import java.util.*;
+
+/**
+ * Finds the words of a vocabulary that contain a fragment. Every suffix of every word is stored in a trie with the
+ * ids of the words it ends, so the words containing a fragment are the values of all suffixes that start with it:
+ * one descent of the length of the fragment, then a walk over the subtree below it, which has a node for about
+ * every occurrence of the fragment, and sorting the distinct words found. The suffixes are kept in a {@link FrozenTrie}, which is about ten times smaller
+ * than the {@link Node} it is built with.
+ * <p>
+ * The index is a copy, later changes to the vocabulary need a new one
+ */
+public final class SuffixIndex {
+
+    // sorted, a word id is its index
+    private final String[] words;
+    private final FrozenTrie<Integer> suffixes;
+
+    private SuffixIndex(String[] words, FrozenTrie<Integer> suffixes) {
+        this.words = words;
+        this.suffixes = suffixes;
+    }
+
+    /**
+     * @param vocabulary distinct words
+     */
+    public static SuffixIndex of(Collection<String> vocabulary) {
+        String[] words = vocabulary.toArray(new String[0]);
+        Arrays.sort(words);
+        List<Map.Entry<String, Integer>> suffixes = new ArrayList<>();
+        for (int id = 0; id < words.length; id++) {
+            String word = words[id];
+            for (int start = 0; start < word.length(); start++) {
+                // a fragment can't start halfway a code point
+                if (start > 0 && Character.isLowSurrogate(word.charAt(start))
+                        && Character.isHighSurrogate(word.charAt(start - 1))) {
+                    continue;
+                }
+                suffixes.add(new AbstractMap.SimpleImmutableEntry<>(word.substring(start), id));
+            }
+        }
+        // building from sorted suffixes saves all the splits of inserting them one by one
+        suffixes.sort(Map.Entry.comparingByKey());
+        return new SuffixIndex(words, Node.fromSorted(suffixes.iterator()).snapshot());
+    }
+
+    /**
+     * @return the words that contain fragment, sorted
+     */
+    public List<String> wordsContaining(String fragment) {
+        int[] ids = idsContaining(fragment);
+        List<String> found = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            found.add(words[id]);
+        }
+        return found;
+    }
+
+    /**
+     * @return number of words in the vocabulary
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * @return the ids of the words that contain fragment, sorted and without duplicates
+     */
+    private int[] idsContaining(String fragment) {
+        // a word that contains the fragment more than once is found once for every time, so duplicates are dropped
+        // as the hits come in and only the distinct words are sorted
+        BitSet seen = new BitSet();
+        int[] ids = new int[16];
+        int distinct = 0;
+        for (Iterator<Integer> hits = suffixes.valuesWithPrefix(fragment).iterator(); hits.hasNext(); ) {
+            int id = hits.next();
+            if (!seen.get(id)) {
+                seen.set(id);
+                if (distinct == ids.length) {
+                    ids = Arrays.copyOf(ids, distinct * 2);
+                }
+                ids[distinct++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, distinct);
+        return Arrays.copyOf(ids, distinct);
+    }
+}
@@ -0,0 +1,129 @@
+package org.rommert.trie;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.Normalizer;
+
+/**
+ * Splits text into lower case words while reading it, so a document never has to be in memory as a whole. Words are
+ * separated by whitespace and consist of letters, in any script, with their accents; other characters are dropped,
+ * so "indruk:" becomes "indruk" and "geëerd" stays "geëerd". Characters are read as whole code points, also when a
+ * surrogate pair is split over two reads, and words with accents are normalized to composed form (NFC), so the
+ * same word typed in different ways is one word. Apart from the words handed to the consumer, the tokenizer only
+ * allocates its two buffers
+ */
+class Tokenizer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    interface WordConsumer {
+        void accept(String word);
+    }
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private char[] word = new char[32];
+    private int length;
+    // whether the word has characters outside ASCII, only those words need normalizing
+    private boolean unicode;
+
+    /**
+     * @return the number of words read
+     */
+    int tokenize(Reader reader, WordConsumer consumer) throws IOException {
+        int nrOfWords = 0;
+        length = 0;
+        unicode = false;
+        char highSurrogate = 0;
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (highSurrogate != 0 && !Character.isLowSurrogate(c)) {
+                    highSurrogate = 0;
+                }
+                if (c >= 'a' && c <= 'z') {
+                    append(c);
+                } else if (c >= 'A' && c <= 'Z') {
+                    append((char) (c + ('a' - 'A')));
+                } else if (c < 0x80) {
+                    if (Character.isWhitespace(c) && length > 0) {
+                        nrOfWords += emit(consumer);
+                    }
+                } else if (Character.isHighSurrogate(c)) {
+                    highSurrogate = c;
+                } else {
+                    int codePoint = c;
+                    if (Character.isLowSurrogate(c)) {
+                        if (highSurrogate == 0) {
+                            continue;
+                        }
+                        codePoint = Character.toCodePoint(highSurrogate, c);
+                    }
+                    highSurrogate = 0;
+                    if (isWordPart(codePoint)) {
+                        appendCodePoint(Character.toLowerCase(codePoint));
+                    } else if (Character.isWhitespace(codePoint) && length > 0) {
+                        nrOfWords += emit(consumer);
+                    }
+                }
+            }
+        }
+        if (length > 0) {
+            nrOfWords += emit(consumer);
+        }
+        return nrOfWords;
+    }
+
+    /**
+     * Turns a word typed in any way into the form the tokenizer gives it: lower case, without characters that are no
+     * part of a word, and composed (NFC). For looking up words in what was tokenized
+     */
+    static String normalize(String word) {
+        StringBuilder normalized = new StringBuilder(word.length());
+        word.codePoints()
+                .filter(Tokenizer::isWordPart)
+                .map(Character::toLowerCase)
+                .forEach(normalized::appendCodePoint);
+        String text = normalized.toString();
+        return Normalizer.isNormalized(text, Normalizer.Form.NFC) ? text : Normalizer.normalize(text, Normalizer.Form.NFC);
+    }
+
+    private static boolean isWordPart(int codePoint) {
+        if (Character.isLetter(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        // accents that follow their letter as separate code points
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    private int emit(WordConsumer consumer) {
+        String text = new String(word, 0, length);
+        if (unicode && !Normalizer.isNormalized(text, Normalizer.Form.NFC)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFC);
+        }
+        consumer.accept(text);
+        length = 0;
+        unicode = false;
+        return 1;
+    }
+
+    private void appendCodePoint(int codePoint) {
+        unicode = true;
+        if (Character.isBmpCodePoint(codePoint)) {
+            append((char) codePoint);
+        } else {
+            append(Character.highSurrogate(codePoint));
+            append(Character.lowSurrogate(codePoint));
+        }
+    }
+
+    private void append(char c) {
+        if (length == word.length) {
+            char[] larger = new char[length * 2];
+            System.arraycopy(word, 0, larger, 0, length);
+            word = larger;
+        }
+        word[length++] = c;
+    }
+}
@@ -0,0 +1,444 @@
+package org.rommert.trie.impl;
+
+import java.util.*;
+
+/**
+ * Radix tree structure shared by the array-backed tries. Every node is an int id. Its edge label is a slice of one
+ * shared char pool, its children form a singly linked list sorted on first character, and it refers to its values
+ * by a slot number; subclasses decide how the values in a slot are stored.
+ */
+abstract class AbstractArrayTrie {
+
+    static final int ROOT = 0;
+    static final int NONE = -1;
+    static final int INITIAL_CAPACITY = 16;
+
+    // edge labels, all nodes point into this pool
+    char[] labels = new char[INITIAL_CAPACITY];
+    private int labelsUsed;
+    private int labelsWasted;
+
+    // per node columns, indexed by node id
+    int[] labelStart = new int[INITIAL_CAPACITY];
+    int[] labelLength = new int[INITIAL_CAPACITY];
+    int[] firstChild = new int[INITIAL_CAPACITY];
+    int[] nextSibling = new int[INITIAL_CAPACITY];
+    int[] valueSlot = new int[INITIAL_CAPACITY];
+    private int nodesUsed;
+    private int freeNode = NONE;
+
+    private int nrOfValueNodes;
+
+    AbstractArrayTrie() {
+        newNode(0, 0);
+    }
+
+    /**
+     * @return a new, empty value slot
+     */
+    abstract int newValueSlot();
+
+    /**
+     * Releases the values in a slot, the slot number may be handed out again
+     */
+    abstract void freeValueSlot(int slot);
+
+    /**
+     * Appends the values in a slot, for toString and toDOTString
+     */
+    abstract void appendValues(StringBuilder output, int slot);
+
+    /**
+     * @return the value slot of the node, allocated when the node had none
+     */
+    int valueSlotOf(int node) {
+        if (valueSlot[node] == NONE) {
+            valueSlot[node] = newValueSlot();
+            nrOfValueNodes++;
+        }
+        return valueSlot[node];
+    }
+
+    /**
+     * Walks down along word, splitting an edge or adding a leaf where needed
+     * @return id of the node for word
+     */
+    int insertPath(String word) {
+        int node = ROOT;
+        int i = 0;
+        while (i < word.length()) {
+            int previous = NONE;
+            int child = firstChild[node];
+            char c = word.charAt(i);
+            while (child != NONE && labels[labelStart[child]] < c) {
+                previous = child;
+                child = nextSibling[child];
+            }
+
+            // no child starts with c: the rest of the word becomes a new leaf
+            if (child == NONE || labels[labelStart[child]] != c) {
+                int leaf = newNode(appendLabel(word, i, word.length()), word.length() - i);
+                link(node, previous, leaf, child);
+                node = leaf;
+                break;
+            }
+
+            int matched = commonLength(child, word, i);
+            if (matched < labelLength[child]) {
+                // split the edge: the common part becomes an intermediate node with the old child below it
+                int intermediate = newNode(labelStart[child], matched);
+                labelStart[child] += matched;
+                labelLength[child] -= matched;
+                link(node, previous, intermediate, nextSibling[child]);
+                firstChild[intermediate] = child;
+                nextSibling[child] = NONE;
+                child = intermediate;
+            }
+            node = child;
+            i += matched;
+        }
+        return node;
+    }
+
+    public void delete(String word) {
+        int parent = NONE;
+        int node = ROOT;
+        int i = 0;
+        while (i < word.length()) {
+            int child = childStartingWith(node, word.charAt(i));
+            if (child == NONE || !labelMatches(child, word, i)) {
+                return;
+            }
+            parent = node;
+            node = child;
+            i += labelLength[child];
+        }
+        if (valueSlot[node] == NONE) {
+            return;
+        }
+        freeValueSlot(valueSlot[node]);
+        valueSlot[node] = NONE;
+        nrOfValueNodes--;
+
+        if (node == ROOT) {
+            return;
+        }
+        // tidy up: a leaf disappears, a node with a single child merges with it, and so may the parent
+        if (firstChild[node] == NONE) {
+            unlink(parent, node);
+            freeNode(node);
+            if (parent != ROOT && valueSlot[parent] == NONE && hasSingleChild(parent)) {
+                merge(parent);
+            }
+        } else if (hasSingleChild(node)) {
+            merge(node);
+        }
+        compactLabelsIfWasteful();
+    }
+
+    public String toDOTString() {
+        StringBuilder dot = new StringBuilder("digraph G\n{\n_[label=\"\"]\n");
+        appendDOT(dot, ROOT, "_");
+        return dot.append("}").toString();
+    }
+
+    private void appendDOT(StringBuilder dot, int node, String nodeName) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            String childNodeName = "n" + child;
+            dot.append(nodeName).append(" -> ").append(childNodeName).append("\n");
+            dot.append(childNodeName).append("[label=\"").append(labels, labelStart[child], labelLength[child]);
+            if (valueSlot[child] != NONE) {
+                appendValues(dot, valueSlot[child]);
+            }
+            dot.append("\"]\n");
+            appendDOT(dot, child, childNodeName);
+        }
+    }
+
+    protected int getNrOfValueNodes() {
+        return nrOfValueNodes;
+    }
+
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        appendString(output, ROOT, 0);
+        return output.toString();
+    }
+
+    private void appendString(StringBuilder output, int node, int level) {
+        for (int i = 0; i < level; i++) {
+            output.append("    ");
+        }
+        output.append(labels, labelStart[node], labelLength[node]);
+        if (valueSlot[node] != NONE) {
+            appendValues(output, valueSlot[node]);
+        }
+        output.append(":\n");
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            appendString(output, child, level + 1);
+            output.append("\n");
+        }
+    }
+
+    int find(CharSequence word) {
+        int node = ROOT;
+        int i = 0;
+        while (i < word.length()) {
+            int child = childStartingWith(node, word.charAt(i));
+            if (child == NONE || !labelMatches(child, word, i)) {
+                return NONE;
+            }
+            node = child;
+            i += labelLength[child];
+        }
+        return node;
+    }
+
+    /**
+     * Finds the topmost node whose subtree holds exactly the words starting with prefix
+     * @param nodeStart receives the offset in prefix where the label of the node starts
+     * @return id of the node, or NONE when no word starts with prefix
+     */
+    int findPrefixNode(String prefix, int[] nodeStart) {
+        int node = ROOT;
+        int offset = 0;
+        while (offset < prefix.length()) {
+            int child = childStartingWith(node, prefix.charAt(offset));
+            if (child == NONE) {
+                return NONE;
+            }
+            nodeStart[0] = offset;
+            if (!labelMatches(child, prefix, offset)) {
+                // the prefix may still end halfway the label of the child
+                return commonLength(child, prefix, offset) < prefix.length() - offset ? NONE : child;
+            }
+            node = child;
+            offset += labelLength[child];
+        }
+        return node;
+    }
+
+    private int childStartingWith(int node, char c) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            char first = labels[labelStart[child]];
+            if (first == c) {
+                return child;
+            }
+            if (first > c) {
+                return NONE;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean labelMatches(int node, CharSequence word, int offset) {
+        int length = labelLength[node];
+        if (word.length() - offset < length) {
+            return false;
+        }
+        int start = labelStart[node];
+        for (int i = 0; i < length; i++) {
+            if (labels[start + i] != word.charAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int commonLength(int node, CharSequence word, int offset) {
+        int max = Math.min(labelLength[node], word.length() - offset);
+        int start = labelStart[node];
+        int i = 0;
+        while (i < max && labels[start + i] == word.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean hasSingleChild(int node) {
+        int child = firstChild[node];
+        return child != NONE && nextSibling[child] == NONE;
+    }
+
+    /**
+     * Merges a node with its only child, the node keeps its place among its siblings and takes over the label
+     * suffix, values and children of the child
+     */
+    private void merge(int node) {
+        int child = firstChild[node];
+        int length = labelLength[node] + labelLength[child];
+        ensureLabelCapacity(length);
+        int start = labelsUsed;
+        System.arraycopy(labels, labelStart[node], labels, start, labelLength[node]);
+        System.arraycopy(labels, labelStart[child], labels, start + labelLength[node], labelLength[child]);
+        labelsUsed += length;
+        labelsWasted += labelLength[node];
+
+        labelStart[node] = start;
+        labelLength[node] = length;
+        valueSlot[node] = valueSlot[child];
+        firstChild[node] = firstChild[child];
+        valueSlot[child] = NONE;
+        freeNode(child);
+    }
+
+    private void link(int parent, int previous, int node, int next) {
+        nextSibling[node] = next;
+        if (previous == NONE) {
+            firstChild[parent] = node;
+        } else {
+            nextSibling[previous] = node;
+        }
+    }
+
+    private void unlink(int parent, int node) {
+        if (firstChild[parent] == node) {
+            firstChild[parent] = nextSibling[node];
+            return;
+        }
+        int previous = firstChild[parent];
+        while (nextSibling[previous] != node) {
+            previous = nextSibling[previous];
+        }
+        nextSibling[previous] = nextSibling[node];
+    }
+
+    private int newNode(int start, int length) {
+        int node;
+        if (freeNode != NONE) {
+            node = freeNode;
+            freeNode = nextSibling[node];
+        } else {
+            if (nodesUsed == labelStart.length) {
+                int capacity = nodesUsed * 2;
+                labelStart = Arrays.copyOf(labelStart, capacity);
+                labelLength = Arrays.copyOf(labelLength, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                valueSlot = Arrays.copyOf(valueSlot, capacity);
+            }
+            node = nodesUsed++;
+        }
+        labelStart[node] = start;
+        labelLength[node] = length;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        valueSlot[node] = NONE;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        labelsWasted += labelLength[node];
+        labelLength[node] = 0;
+        firstChild[node] = NONE;
+        nextSibling[node] = freeNode;
+        freeNode = node;
+    }
+
+    private int appendLabel(String word, int from, int to) {
+        ensureLabelCapacity(to - from);
+        int start = labelsUsed;
+        word.getChars(from, to, labels, start);
+        labelsUsed += to - from;
+        return start;
+    }
+
+    private void ensureLabelCapacity(int extra) {
+        if (labelsUsed + extra > labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelsUsed + extra));
+        }
+    }
+
+    /**
+     * Merges and deletes leave unused slices in the label pool. Once they take up more than half of it, the pool
+     * is rewritten with only the labels of live nodes
+     */
+    private void compactLabelsIfWasteful() {
+        if (labelsWasted * 2 <= labelsUsed) {
+            return;
+        }
+        char[] compacted = new char[Math.max(INITIAL_CAPACITY, (labelsUsed - labelsWasted) * 2)];
+        int used = 0;
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(ROOT);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            System.arraycopy(labels, labelStart[node], compacted, used, labelLength[node]);
+            labelStart[node] = used;
+            used += labelLength[node];
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                stack.push(child);
+            }
+        }
+        labels = compacted;
+        labelsUsed = used;
+        labelsWasted = 0;
+    }
+
+    /**
+     * Depth first, pre-order walk over a subtree that yields an element for every node with values. The stack holds
+     * pairs of node id and the length of the word of its parent. After visiting a node its next sibling is pushed
+     * below its first child, so siblings come after the whole subtree and words come out in lexicographic order
+     */
+    abstract class PrefixIterator<E> implements Iterator<E> {
+
+        private int[] stack = new int[16];
+        private int stackSize;
+        private final int start;
+        private final StringBuilder path;
+        private E next;
+
+        PrefixIterator(String prefix) {
+            int[] pathLength = new int[1];
+            start = findPrefixNode(prefix, pathLength);
+            path = new StringBuilder(prefix.substring(0, start == NONE ? 0 : pathLength[0]));
+            if (start != NONE) {
+                push(start, path.length());
+            }
+        }
+
+        /**
+         * @return the element for a node with values
+         */
+        abstract E element(String word, int slot);
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && stackSize > 0) {
+                stackSize -= 2;
+                int node = stack[stackSize];
+                int parentLength = stack[stackSize + 1];
+                path.setLength(parentLength);
+                path.append(labels, labelStart[node], labelLength[node]);
+                if (node != start && nextSibling[node] != NONE) {
+                    push(nextSibling[node], parentLength);
+                }
+                if (firstChild[node] != NONE) {
+                    push(firstChild[node], path.length());
+                }
+                if (valueSlot[node] != NONE) {
+                    next = element(path.toString(), valueSlot[node]);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E result = next;
+            next = null;
+            return result;
+        }
+
+        private void push(int node, int parentLength) {
+            if (stackSize == stack.length) {
+                stack = Arrays.copyOf(stack, stackSize * 2);
+            }
+            stack[stackSize++] = node;
+            stack[stackSize++] = parentLength;
+        }
+    }
+}
@@ -0,0 +1,580 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Adaptive radix tree (ART) over the UTF-8 bytes of the keys. Every node has the smallest layout that fits its
+ * number of children, and is replaced by a larger or smaller one as inserts and deletes change that number:
+ * <ul>
+ *     <li>a leaf has no children at all</li>
+ *     <li>{@link Node4} and {@link Node16} keep up to 4 or 16 sorted key bytes next to their children, so finding a
+ *     child is a short scan through one small array</li>
+ *     <li>{@link Node48} maps every byte value to one of 48 child slots</li>
+ *     <li>{@link Node256} indexes its children by byte value directly</li>
+ * </ul>
+ * Nodes shrink again with some slack below the size they grew at, so a word that is inserted and deleted repeatedly
+ * doesn't resize a node every time. Like in {@link ByteTrie}, chains of nodes with a single child are collapsed into
+ * one node with a multi byte label, and words are iterated in order of their UTF-8 bytes.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class AdaptiveTrie<D> implements Trie<D> {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private ArtNode<D> root = new Leaf<>(EMPTY);
+    private int nrOfValueNodes;
+
+    @Override
+    public void insert(String word, D data) {
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        ArtNode<D> parent = null;
+        ArtNode<D> node = root;
+        int i = 0;
+        while (i < key.length) {
+            ArtNode<D> child = node.child(key[i]);
+            if (child == null) {
+                child = new Leaf<>(Arrays.copyOfRange(key, i, key.length));
+                addChild(parent, node, child);
+                node = child;
+                break;
+            }
+            int common = ByteKeys.commonLength(child.label, key, i);
+            if (common < child.label.length) {
+                ArtNode<D> middle = new Node4<>(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                middle.add(child);
+                node.replace(middle);
+                child = middle;
+            }
+            parent = node;
+            node = child;
+            i += common;
+        }
+        if (node.values == null) {
+            node.values = new ArrayList<>(1);
+            nrOfValueNodes++;
+        }
+        node.values.add(data);
+    }
+
+    @Override
+    public List<D> search(String word) {
+        ArtNode<D> node = find(word.getBytes(StandardCharsets.UTF_8));
+        return node == null || node.values == null ? Collections.emptyList() : Collections.unmodifiableList(node.values);
+    }
+
+    @Override
+    public void delete(String word) {
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        ArtNode<D> grandParent = null;
+        ArtNode<D> parent = null;
+        ArtNode<D> node = root;
+        int i = 0;
+        while (i < key.length) {
+            ArtNode<D> child = node.child(key[i]);
+            if (child == null || !labelMatches(child.label, key, i)) {
+                return;
+            }
+            grandParent = parent;
+            parent = node;
+            node = child;
+            i += child.label.length;
+        }
+        if (node.values == null) {
+            return;
+        }
+        node.values = null;
+        nrOfValueNodes--;
+        if (node == root) {
+            return;
+        }
+        if (node.childCount == 0) {
+            parent.remove(node.label[0]);
+            if (parent != root && parent.values == null && parent.childCount == 1) {
+                merge(grandParent, parent);
+            } else {
+                replaceIn(grandParent, parent, parent.shrink());
+            }
+        } else if (node.childCount == 1) {
+            merge(parent, node);
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        ArtNode<D> node = root;
+        int i = 0;
+        while (i < key.length) {
+            node = node.child(key[i]);
+            if (node == null) {
+                return Collections.emptyIterator();
+            }
+            int common = ByteKeys.commonLength(node.label, key, i);
+            if (i + common == key.length) {
+                return new ByteKeys.PrefixIterator<>(node, Arrays.copyOf(key, i));
+            }
+            if (common < node.label.length) {
+                return Collections.emptyIterator();
+            }
+            i += common;
+        }
+        return new ByteKeys.PrefixIterator<>(node, EMPTY);
+    }
+
+    @Override
+    public String toDOTString() {
+        StringBuilder dot = new StringBuilder("digraph G\n{\n_[label=\"\"]\n");
+        appendDOT(dot, root, "_", new int[]{0});
+        return dot.append("}").toString();
+    }
+
+    private void appendDOT(StringBuilder dot, ArtNode<D> node, String nodeName, int[] nextId) {
+        for (ArtNode<D> child : node.children()) {
+            String childNodeName = "n" + nextId[0]++;
+            dot.append(nodeName).append(" -> ").append(childNodeName).append("\n");
+            dot.append(childNodeName).append("[label=\"");
+            ByteKeys.appendLabel(dot, child.label);
+            if (child.values != null) {
+                dot.append(child.values);
+            }
+            dot.append("\"]\n");
+            appendDOT(dot, child, childNodeName, nextId);
+        }
+    }
+
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        appendString(output, root, 0);
+        return output.toString();
+    }
+
+    private void appendString(StringBuilder output, ArtNode<D> node, int level) {
+        for (int i = 0; i < level; i++) {
+            output.append("    ");
+        }
+        ByteKeys.appendLabel(output, node.label);
+        if (node.values != null) {
+            output.append(node.values);
+        }
+        output.append(" (").append(node.getClass().getSimpleName()).append("):\n");
+        for (ArtNode<D> child : node.children()) {
+            appendString(output, child, level + 1);
+            output.append("\n");
+        }
+    }
+
+    protected int getNrOfValueNodes() {
+        return nrOfValueNodes;
+    }
+
+    private ArtNode<D> find(byte[] key) {
+        ArtNode<D> node = root;
+        int i = 0;
+        while (i < key.length) {
+            node = node.child(key[i]);
+            if (node == null || !labelMatches(node.label, key, i)) {
+                return null;
+            }
+            i += node.label.length;
+        }
+        return node;
+    }
+
+    private void addChild(ArtNode<D> parent, ArtNode<D> node, ArtNode<D> child) {
+        if (node.isFull()) {
+            ArtNode<D> larger = node.grow();
+            replaceIn(parent, node, larger);
+            node = larger;
+        }
+        node.add(child);
+    }
+
+    /**
+     * Puts a node in the place of another one, which starts with the same byte
+     */
+    private void replaceIn(ArtNode<D> parent, ArtNode<D> node, ArtNode<D> replacement) {
+        if (node == replacement) {
+            return;
+        }
+        if (parent == null) {
+            root = replacement;
+        } else {
+            parent.replace(replacement);
+        }
+    }
+
+    /**
+     * Replaces a node without values and with a single child by that child, with the labels joined
+     */
+    private void merge(ArtNode<D> parent, ArtNode<D> node) {
+        ArtNode<D> child = node.children().get(0);
+        byte[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+        System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+        child.label = label;
+        replaceIn(parent, node, child);
+    }
+
+    private static boolean labelMatches(byte[] label, byte[] key, int from) {
+        if (key.length - from < label.length) {
+            return false;
+        }
+        for (int i = 1; i < label.length; i++) {
+            if (label[i] != key[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A node of any size. The label starts with the byte the parent finds the node by
+     */
+    abstract static class ArtNode<D> implements ByteKeys.ByteKeyNode<ArtNode<D>, D> {
+
+        byte[] label;
+        List<D> values;
+        int childCount;
+
+        ArtNode(byte[] label) {
+            this.label = label;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <D> ArtNode<D>[] newArray(int length) {
+            return (ArtNode<D>[]) new ArtNode<?>[length];
+        }
+
+        @Override
+        public byte[] label() {
+            return label;
+        }
+
+        @Override
+        public List<D> values() {
+            return values;
+        }
+
+        abstract ArtNode<D> child(byte b);
+
+        abstract boolean isFull();
+
+        /**
+         * Adds a child whose first byte is not used yet, the node must not be full
+         */
+        abstract void add(ArtNode<D> child);
+
+        /**
+         * Replaces the child with the same first byte
+         */
+        abstract void replace(ArtNode<D> child);
+
+        abstract void remove(byte b);
+
+        /**
+         * @return a copy of this node that has room for more children
+         */
+        abstract ArtNode<D> grow();
+
+        /**
+         * @return this node, or a smaller copy when it has few enough children
+         */
+        abstract ArtNode<D> shrink();
+
+        /**
+         * @return the children in order of their first byte
+         */
+        @Override
+        public abstract List<ArtNode<D>> children();
+
+        <N extends ArtNode<D>> N copyInto(N node) {
+            node.values = values;
+            for (ArtNode<D> child : children()) {
+                node.add(child);
+            }
+            return node;
+        }
+    }
+
+    static final class Leaf<D> extends ArtNode<D> {
+
+        Leaf(byte[] label) {
+            super(label);
+        }
+
+        @Override
+        ArtNode<D> child(byte b) {
+            return null;
+        }
+
+        @Override
+        boolean isFull() {
+            return true;
+        }
+
+        @Override
+        void add(ArtNode<D> child) {
+            throw new IllegalStateException("a leaf has no room for children");
+        }
+
+        @Override
+        void replace(ArtNode<D> child) {
+            throw new IllegalStateException("a leaf has no children");
+        }
+
+        @Override
+        void remove(byte b) {
+            throw new IllegalStateException("a leaf has no children");
+        }
+
+        @Override
+        ArtNode<D> grow() {
+            return copyInto(new Node4<>(label));
+        }
+
+        @Override
+        ArtNode<D> shrink() {
+            return this;
+        }
+
+        @Override
+        public List<ArtNode<D>> children() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Children sorted on their first byte, unsigned, with the bytes in a separate small array that is scanned
+     */
+    abstract static class SortedNode<D> extends ArtNode<D> {
+
+        final byte[] keys;
+        final ArtNode<D>[] nodes;
+
+        SortedNode(byte[] label, int capacity) {
+            super(label);
+            keys = new byte[capacity];
+            nodes = newArray(capacity);
+        }
+
+        @Override
+        ArtNode<D> child(byte b) {
+            for (int i = 0; i < childCount; i++) {
+                if (keys[i] == b) {
+                    return nodes[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        boolean isFull() {
+            return childCount == keys.length;
+        }
+
+        @Override
+        void add(ArtNode<D> child) {
+            byte b = child.label[0];
+            int i = childCount;
+            while (i > 0 && (keys[i - 1] & 0xFF) > (b & 0xFF)) {
+                keys[i] = keys[i - 1];
+                nodes[i] = nodes[i - 1];
+                i--;
+            }
+            keys[i] = b;
+            nodes[i] = child;
+            childCount++;
+        }
+
+        @Override
+        void replace(ArtNode<D> child) {
+            for (int i = 0; i < childCount; i++) {
+                if (keys[i] == child.label[0]) {
+                    nodes[i] = child;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        void remove(byte b) {
+            for (int i = 0; i < childCount; i++) {
+                if (keys[i] == b) {
+                    childCount--;
+                    System.arraycopy(keys, i + 1, keys, i, childCount - i);
+                    System.arraycopy(nodes, i + 1, nodes, i, childCount - i);
+                    nodes[childCount] = null;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public List<ArtNode<D>> children() {
+            return Arrays.asList(nodes).subList(0, childCount);
+        }
+    }
+
+    static final class Node4<D> extends SortedNode<D> {
+
+        Node4(byte[] label) {
+            super(label, 4);
+        }
+
+        @Override
+        ArtNode<D> grow() {
+            return copyInto(new Node16<>(label));
+        }
+
+        @Override
+        ArtNode<D> shrink() {
+            return childCount == 0 ? copyInto(new Leaf<>(label)) : this;
+        }
+    }
+
+    static final class Node16<D> extends SortedNode<D> {
+
+        Node16(byte[] label) {
+            super(label, 16);
+        }
+
+        @Override
+        ArtNode<D> grow() {
+            return copyInto(new Node48<>(label));
+        }
+
+        @Override
+        ArtNode<D> shrink() {
+            return childCount <= 3 ? copyInto(new Node4<>(label)) : this;
+        }
+    }
+
+    /**
+     * Maps every byte value to a slot in a 48 child array; 0 means no child, otherwise the slot is one less
+     */
+    static final class Node48<D> extends ArtNode<D> {
+
+        private final byte[] slotOf = new byte[256];
+        private final ArtNode<D>[] nodes = newArray(48);
+
+        Node48(byte[] label) {
+            super(label);
+        }
+
+        @Override
+        ArtNode<D> child(byte b) {
+            int slot = slotOf[b & 0xFF];
+            return slot == 0 ? null : nodes[slot - 1];
+        }
+
+        @Override
+        boolean isFull() {
+            return childCount == nodes.length;
+        }
+
+        @Override
+        void add(ArtNode<D> child) {
+            int slot = 0;
+            while (nodes[slot] != null) {
+                slot++;
+            }
+            nodes[slot] = child;
+            slotOf[child.label[0] & 0xFF] = (byte) (slot + 1);
+            childCount++;
+        }
+
+        @Override
+        void replace(ArtNode<D> child) {
+            nodes[slotOf[child.label[0] & 0xFF] - 1] = child;
+        }
+
+        @Override
+        void remove(byte b) {
+            nodes[slotOf[b & 0xFF] - 1] = null;
+            slotOf[b & 0xFF] = 0;
+            childCount--;
+        }
+
+        @Override
+        ArtNode<D> grow() {
+            return copyInto(new Node256<>(label));
+        }
+
+        @Override
+        ArtNode<D> shrink() {
+            return childCount <= 12 ? copyInto(new Node16<>(label)) : this;
+        }
+
+        @Override
+        public List<ArtNode<D>> children() {
+            List<ArtNode<D>> children = new ArrayList<>(childCount);
+            for (int b = 0; b < 256; b++) {
+                if (slotOf[b] != 0) {
+                    children.add(nodes[slotOf[b] - 1]);
+                }
+            }
+            return children;
+        }
+    }
+
+    static final class Node256<D> extends ArtNode<D> {
+
+        private final ArtNode<D>[] nodes = newArray(256);
+
+        Node256(byte[] label) {
+            super(label);
+        }
+
+        @Override
+        ArtNode<D> child(byte b) {
+            return nodes[b & 0xFF];
+        }
+
+        @Override
+        boolean isFull() {
+            return false;
+        }
+
+        @Override
+        void add(ArtNode<D> child) {
+            nodes[child.label[0] & 0xFF] = child;
+            childCount++;
+        }
+
+        @Override
+        void replace(ArtNode<D> child) {
+            nodes[child.label[0] & 0xFF] = child;
+        }
+
+        @Override
+        void remove(byte b) {
+            nodes[b & 0xFF] = null;
+            childCount--;
+        }
+
+        @Override
+        ArtNode<D> grow() {
+            throw new IllegalStateException("a node can't have more than 256 children");
+        }
+
+        @Override
+        ArtNode<D> shrink() {
+            return childCount <= 37 ? copyInto(new Node48<>(label)) : this;
+        }
+
+        @Override
+        public List<ArtNode<D>> children() {
+            List<ArtNode<D>> children = new ArrayList<>(childCount);
+            for (ArtNode<D> node : nodes) {
+                if (node != null) {
+                    children.add(node);
+                }
+            }
+            return children;
+        }
+    }
+}
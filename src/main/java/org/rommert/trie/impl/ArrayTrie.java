@@ -0,0 +1,93 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.*;
+
+/**
+ * Radix trie that keeps the whole tree in a handful of flat primitive arrays instead of one object per node.
+ * Every node is an int id. Its edge label is a slice of one shared char pool, its children form a singly linked
+ * list sorted on first character, and its values live in a side table. Memory per key is therefore dominated by
+ * the key characters themselves and the stored values, not by object headers and hash tables.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class ArrayTrie<D> extends AbstractArrayTrie implements Trie<D> {
+
+    // value side table, values of a node are stored in an array with a separate count.
+    // The count of a freed slot is the index of the next free slot
+    private Object[][] valueArrays = new Object[INITIAL_CAPACITY][];
+    private int[] valueCounts = new int[INITIAL_CAPACITY];
+    private int valueSlotsUsed;
+    private int freeValueSlot = NONE;
+
+    @Override
+    public void insert(String word, D data) {
+        int slot = valueSlotOf(insertPath(word));
+        Object[] values = valueArrays[slot];
+        if (valueCounts[slot] == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+            valueArrays[slot] = values;
+        }
+        values[valueCounts[slot]++] = data;
+    }
+
+    @Override
+    public List<D> search(String word) {
+        return search((CharSequence) word);
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        int node = find(word);
+        if (node == NONE || valueSlot[node] == NONE) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(valuesOf(valueSlot[node]));
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        return new PrefixIterator<Map.Entry<String, List<D>>>(prefix) {
+            @Override
+            Map.Entry<String, List<D>> element(String word, int slot) {
+                return new AbstractMap.SimpleImmutableEntry<>(word, Collections.unmodifiableList(valuesOf(slot)));
+            }
+        };
+    }
+
+    @Override
+    void appendValues(StringBuilder output, int slot) {
+        output.append(valuesOf(slot));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<D> valuesOf(int slot) {
+        return (List<D>) Arrays.asList(valueArrays[slot]).subList(0, valueCounts[slot]);
+    }
+
+    @Override
+    int newValueSlot() {
+        int slot;
+        if (freeValueSlot != NONE) {
+            slot = freeValueSlot;
+            freeValueSlot = valueCounts[slot];
+        } else {
+            if (valueSlotsUsed == valueArrays.length) {
+                valueArrays = Arrays.copyOf(valueArrays, valueSlotsUsed * 2);
+                valueCounts = Arrays.copyOf(valueCounts, valueSlotsUsed * 2);
+            }
+            slot = valueSlotsUsed++;
+        }
+        valueArrays[slot] = new Object[1];
+        valueCounts[slot] = 0;
+        return slot;
+    }
+
+    @Override
+    void freeValueSlot(int slot) {
+        valueArrays[slot] = null;
+        valueCounts[slot] = freeValueSlot;
+        freeValueSlot = slot;
+    }
+}
@@ -0,0 +1,114 @@
+package org.rommert.trie.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * What the tries on UTF-8 bytes, {@link ByteTrie} and {@link AdaptiveTrie}, share: walking a subtree in order,
+ * comparing labels and showing them
+ */
+final class ByteKeys {
+
+    private ByteKeys() {
+    }
+
+    /**
+     * A node with a label of bytes, that starts with the byte its parent finds it by
+     * @param <N> the type of the node itself
+     * @param <D> Data type that can be stored in the trie
+     */
+    interface ByteKeyNode<N extends ByteKeyNode<N, D>, D> {
+
+        byte[] label();
+
+        /**
+         * @return the values, or null when the node ends no word
+         */
+        List<D> values();
+
+        /**
+         * @return the children in order of their first byte
+         */
+        List<N> children();
+    }
+
+    static int commonLength(byte[] label, byte[] key, int from) {
+        int max = Math.min(label.length, key.length - from);
+        int i = 0;
+        while (i < max && label[i] == key[from + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Labels can start or end in the middle of a character, so bytes outside printable ASCII are shown in hex
+     */
+    static void appendLabel(StringBuilder output, byte[] label) {
+        for (byte b : label) {
+            if (b >= 0x20 && b < 0x7F && b != '"' && b != '\\') {
+                output.append((char) b);
+            } else {
+                output.append(String.format("\\\\x%02x", b & 0xFF));
+            }
+        }
+    }
+
+    /**
+     * Depth first walk over a subtree that keeps the bytes of the current word in one growing buffer; words are
+     * only decoded when they are returned
+     */
+    static final class PrefixIterator<N extends ByteKeyNode<N, D>, D> implements Iterator<Map.Entry<String, List<D>>> {
+
+        private final Deque<N> stack = new ArrayDeque<>();
+        // length of the word in front of the label of the node at the same depth in the stack
+        private final Deque<Integer> parentLengths = new ArrayDeque<>();
+        private byte[] word;
+        private Map.Entry<String, List<D>> next;
+
+        PrefixIterator(N node, byte[] parentWord) {
+            word = Arrays.copyOf(parentWord, Math.max(16, parentWord.length * 2));
+            stack.push(node);
+            parentLengths.push(parentWord.length);
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && !stack.isEmpty()) {
+                N node = stack.pop();
+                byte[] label = node.label();
+                int length = parentLengths.pop();
+                if (length + label.length > word.length) {
+                    word = Arrays.copyOf(word, Math.max(word.length * 2, length + label.length));
+                }
+                System.arraycopy(label, 0, word, length, label.length);
+                length += label.length;
+                List<N> children = node.children();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                    parentLengths.push(length);
+                }
+                if (node.values() != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(new String(word, 0, length, StandardCharsets.UTF_8),
+                            Collections.unmodifiableList(node.values()));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, List<D>> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, List<D>> result = next;
+            advance();
+            return result;
+        }
+    }
+}
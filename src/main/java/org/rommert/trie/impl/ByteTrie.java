@@ -0,0 +1,329 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Radix trie over the UTF-8 bytes of its keys instead of Java chars, so every Unicode character, including those
+ * outside the basic plane, is stored and compared as what it is. Keys that are already encoded, for instance
+ * straight from a network buffer, can be looked up with {@link #search(ByteBuffer)} without decoding them first.
+ * <p>
+ * A node has at most 256 children. They are kept in an array indexed by byte value, covering only the range from
+ * the lowest to the highest byte that starts a child, so finding a child is a single array access while the nodes
+ * of a text in one script stay small.
+ * <p>
+ * Words are iterated in order of their UTF-8 bytes, which is the order of their Unicode code points. That is the
+ * order of {@link String#compareTo} as well, except for characters above U+FFFF against U+E000 to U+FFFF.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class ByteTrie<D> implements Trie<D> {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ByteNode<D> root = new ByteNode<>(EMPTY);
+
+    @Override
+    public void insert(String word, D data) {
+        insert(word.getBytes(StandardCharsets.UTF_8), data);
+    }
+
+    /**
+     * Add a UTF-8 encoded word and a data object to the trie
+     * @param key UTF-8 bytes of the word, not kept by the trie
+     * @param data Data element that should be stored with the word
+     */
+    public void insert(byte[] key, D data) {
+        ByteNode<D> node = root;
+        int i = 0;
+        while (i < key.length) {
+            ByteNode<D> child = node.child(key[i]);
+            if (child == null) {
+                child = new ByteNode<>(Arrays.copyOfRange(key, i, key.length));
+                node.setChild(child);
+                node = child;
+                break;
+            }
+            int common = ByteKeys.commonLength(child.label, key, i);
+            if (common < child.label.length) {
+                ByteNode<D> middle = new ByteNode<>(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                middle.setChild(child);
+                node.setChild(middle);
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.values == null) {
+            node.values = new ArrayList<>(1);
+        }
+        node.values.add(data);
+    }
+
+    @Override
+    public List<D> search(String word) {
+        return search(word.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Search for a UTF-8 encoded word
+     * @return Read-only list with Data items, empty when the word is not in the trie
+     */
+    public List<D> search(byte[] key) {
+        return search(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * Search for the UTF-8 encoded word between the position and the limit of the buffer. The buffer itself is
+     * left as it is, so the same buffer can be searched again
+     * @return Read-only list with Data items, empty when the word is not in the trie
+     */
+    public List<D> search(ByteBuffer key) {
+        ByteNode<D> node = root;
+        int i = key.position();
+        while (i < key.limit()) {
+            node = node.child(key.get(i));
+            if (node == null || !labelMatches(node.label, key, i)) {
+                return Collections.emptyList();
+            }
+            i += node.label.length;
+        }
+        return node.values == null ? Collections.emptyList() : Collections.unmodifiableList(node.values);
+    }
+
+    @Override
+    public void delete(String word) {
+        delete(word.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Delete a UTF-8 encoded word and all its data objects from the trie
+     */
+    public void delete(byte[] key) {
+        ByteBuffer buffer = ByteBuffer.wrap(key);
+        ByteNode<D> grandParent = null;
+        ByteNode<D> parent = null;
+        ByteNode<D> node = root;
+        int i = 0;
+        while (i < key.length) {
+            ByteNode<D> child = node.child(key[i]);
+            if (child == null || !labelMatches(child.label, buffer, i)) {
+                return;
+            }
+            grandParent = parent;
+            parent = node;
+            node = child;
+            i += child.label.length;
+        }
+        node.values = null;
+        if (node == root) {
+            return;
+        }
+        if (node.childCount == 0) {
+            parent.removeChild(node.label[0]);
+            if (parent != root && parent.values == null && parent.childCount == 1) {
+                merge(grandParent, parent);
+            }
+        } else if (node.childCount == 1) {
+            merge(parent, node);
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        ByteNode<D> node = root;
+        int i = 0;
+        while (i < key.length) {
+            node = node.child(key[i]);
+            if (node == null) {
+                return Collections.emptyIterator();
+            }
+            int common = ByteKeys.commonLength(node.label, key, i);
+            if (i + common == key.length) {
+                return new ByteKeys.PrefixIterator<>(node, Arrays.copyOf(key, i));
+            }
+            if (common < node.label.length) {
+                return Collections.emptyIterator();
+            }
+            i += common;
+        }
+        return new ByteKeys.PrefixIterator<>(node, Arrays.copyOf(key, i - node.label.length));
+    }
+
+    @Override
+    public String toDOTString() {
+        StringBuilder dot = new StringBuilder("digraph G\n{\n_[label=\"\"]\n");
+        appendDOT(dot, root, "_", new int[]{0});
+        return dot.append("}").toString();
+    }
+
+    private void appendDOT(StringBuilder dot, ByteNode<D> node, String nodeName, int[] nextId) {
+        for (ByteNode<D> child : node.children()) {
+            String childNodeName = "n" + nextId[0]++;
+            dot.append(nodeName).append(" -> ").append(childNodeName).append("\n");
+            dot.append(childNodeName).append("[label=\"");
+            ByteKeys.appendLabel(dot, child.label);
+            if (child.values != null) {
+                dot.append(child.values);
+            }
+            dot.append("\"]\n");
+            appendDOT(dot, child, childNodeName, nextId);
+        }
+    }
+
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        appendString(output, root, 0);
+        return output.toString();
+    }
+
+    private void appendString(StringBuilder output, ByteNode<D> node, int level) {
+        for (int i = 0; i < level; i++) {
+            output.append("    ");
+        }
+        ByteKeys.appendLabel(output, node.label);
+        if (node.values != null) {
+            output.append(node.values);
+        }
+        output.append(":\n");
+        for (ByteNode<D> child : node.children()) {
+            appendString(output, child, level + 1);
+            output.append("\n");
+        }
+    }
+
+    protected int getNrOfValueNodes() {
+        int count = 0;
+        Deque<ByteNode<D>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            ByteNode<D> node = stack.pop();
+            if (node.values != null) {
+                count++;
+            }
+            node.children().forEach(stack::push);
+        }
+        return count;
+    }
+
+    /**
+     * Replaces a node without values and with a single child by that child, with the labels joined
+     */
+    private static <D> void merge(ByteNode<D> parent, ByteNode<D> node) {
+        ByteNode<D> child = node.children().get(0);
+        byte[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+        System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+        child.label = label;
+        parent.setChild(child);
+    }
+
+    private static boolean labelMatches(byte[] label, ByteBuffer key, int from) {
+        if (key.limit() - from < label.length) {
+            return false;
+        }
+        for (int i = 0; i < label.length; i++) {
+            if (label[i] != key.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class ByteNode<D> implements ByteKeys.ByteKeyNode<ByteNode<D>, D> {
+
+        private byte[] label;
+        private List<D> values;
+        // children[i] starts with byte value firstByte + i
+        private ByteNode<D>[] children;
+        private int firstByte;
+        private int childCount;
+
+        private ByteNode(byte[] label) {
+            this.label = label;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <D> ByteNode<D>[] newArray(int length) {
+            return (ByteNode<D>[]) new ByteNode<?>[length];
+        }
+
+        @Override
+        public byte[] label() {
+            return label;
+        }
+
+        @Override
+        public List<D> values() {
+            return values;
+        }
+
+        private ByteNode<D> child(byte b) {
+            int index = (b & 0xFF) - firstByte;
+            return children == null || index < 0 || index >= children.length ? null : children[index];
+        }
+
+        /**
+         * Adds the child, or replaces the child that starts with the same byte
+         */
+        private void setChild(ByteNode<D> child) {
+            int b = child.label[0] & 0xFF;
+            if (children == null) {
+                children = newArray(1);
+                firstByte = b;
+            } else if (b < firstByte) {
+                ByteNode<D>[] larger = newArray(children.length + firstByte - b);
+                System.arraycopy(children, 0, larger, firstByte - b, children.length);
+                children = larger;
+                firstByte = b;
+            } else if (b - firstByte >= children.length) {
+                children = Arrays.copyOf(children, b - firstByte + 1);
+            }
+            if (children[b - firstByte] == null) {
+                childCount++;
+            }
+            children[b - firstByte] = child;
+        }
+
+        private void removeChild(byte b) {
+            children[(b & 0xFF) - firstByte] = null;
+            if (--childCount == 0) {
+                children = null;
+                return;
+            }
+            int low = 0;
+            while (children[low] == null) {
+                low++;
+            }
+            int high = children.length - 1;
+            while (children[high] == null) {
+                high--;
+            }
+            if (low > 0 || high < children.length - 1) {
+                children = Arrays.copyOfRange(children, low, high + 1);
+                firstByte += low;
+            }
+        }
+
+        /**
+         * @return the children in order of their first byte
+         */
+        @Override
+        public List<ByteNode<D>> children() {
+            if (children == null) {
+                return Collections.emptyList();
+            }
+            List<ByteNode<D>> result = new ArrayList<>(childCount);
+            for (ByteNode<D> child : children) {
+                if (child != null) {
+                    result.add(child);
+                }
+            }
+            return result;
+        }
+    }
+}
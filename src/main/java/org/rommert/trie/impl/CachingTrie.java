@@ -0,0 +1,323 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.FuzzyMatch;
+import org.rommert.trie.interfaces.Trie;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Read-through cache of search results in front of a trie, for skewed traffic where a few words take most lookups.
+ * It holds at most capacity words, and decides what to keep the way W-TinyLFU does:
+ * <ul>
+ * <li>a new word enters a small LRU window, 1% of the capacity, so a burst of lookups of a new word is served;</li>
+ * <li>a word pushed out of the window only gets into the main part, a segmented LRU, when it was looked up more
+ * often recently than the word it would push out. A scan of words that are looked up once doesn't flush the
+ * words that are looked up all the time;</li>
+ * <li>how often words were looked up is estimated with a count-min sketch of 4 bit counters, which are halved
+ * every 10 times capacity lookups so the estimate follows changes in popularity.</li>
+ * </ul>
+ * An insert or delete of a word through this trie drops only that word from the cache. Changes made to the
+ * underlying trie directly are not seen.
+ * <p>
+ * Found values are cached as an unmodifiable copy, and so are misses. Lookups lock the cache, not the underlying
+ * trie: the underlying search of a miss runs unlocked, so a concurrent trie stays concurrent
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class CachingTrie<D> implements Trie<D> {
+
+    private final Trie<D> trie;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final int mainCapacity;
+    private final FrequencySketch sketch;
+
+    // guarded by this; all three in access order, least recently used first
+    private final LinkedHashMap<String, List<D>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, List<D>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, List<D>> protectedWords = new LinkedHashMap<>(16, 0.75f, true);
+    // words whose underlying search runs unlocked, so a result searched before a change of its word isn't cached
+    // after it; changes of other words don't matter
+    private final Map<String, Search> searching = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param trie Trie to cache search results of
+     * @param capacity Maximum number of words to cache, at least 2
+     */
+    public CachingTrie(Trie<D> trie, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2, not " + capacity);
+        }
+        this.trie = trie;
+        windowCapacity = Math.max(1, capacity / 100);
+        mainCapacity = capacity - windowCapacity;
+        protectedCapacity = mainCapacity * 8 / 10;
+        sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public List<D> search(String word) {
+        Search search;
+        synchronized (this) {
+            sketch.increment(word);
+            List<D> values = cached(word);
+            if (values != null) {
+                hits++;
+                return values;
+            }
+            misses++;
+            search = searching.computeIfAbsent(word, w -> new Search());
+            search.searchers++;
+        }
+        List<D> values = null;
+        try {
+            List<D> found = trie.search(word);
+            values = found.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(found));
+        } finally {
+            synchronized (this) {
+                if (--search.searchers == 0) {
+                    searching.remove(word);
+                }
+                if (values != null && !search.changed && cached(word) == null) {
+                    add(word, values);
+                }
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        return search(word.toString());
+    }
+
+    @Override
+    public void insert(String word, D data) {
+        trie.insert(word, data);
+        invalidate(word);
+    }
+
+    @Override
+    public void insertAll(Map<String, ? extends D> entries) {
+        trie.insertAll(entries);
+        synchronized (this) {
+            for (String word : entries.keySet()) {
+                remove(word);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String word) {
+        trie.delete(word);
+        invalidate(word);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        return trie.prefixIterator(prefix);
+    }
+
+    @Override
+    public long countWithPrefix(String prefix) {
+        return trie.countWithPrefix(prefix);
+    }
+
+    @Override
+    public long countValuesWithPrefix(String prefix) {
+        return trie.countValuesWithPrefix(prefix);
+    }
+
+    @Override
+    public List<FuzzyMatch<D>> searchFuzzy(String word, int maxEdits) {
+        return trie.searchFuzzy(word, maxEdits);
+    }
+
+    @Override
+    public String toDOTString() {
+        return trie.toDOTString();
+    }
+
+    @Override
+    public void writeDOT(Appendable out) throws IOException {
+        trie.writeDOT(out);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return fraction of searches answered from the cache, 0 before the first search
+     */
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * @return number of words dropped to make room, not counting words dropped by a change
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of words cached
+     */
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedWords.size();
+    }
+
+    private synchronized void invalidate(String word) {
+        remove(word);
+    }
+
+    /**
+     * Drops the word from the cache, and keeps searches of it that are still running from caching what they find
+     */
+    private void remove(String word) {
+        Search search = searching.get(word);
+        if (search != null) {
+            search.changed = true;
+        }
+        if (window.remove(word) == null && probation.remove(word) == null) {
+            protectedWords.remove(word);
+        }
+    }
+
+    /**
+     * @return the cached values, or null; a word found in probation is promoted to protected
+     */
+    private List<D> cached(String word) {
+        List<D> values = window.get(word);
+        if (values != null) {
+            return values;
+        }
+        values = protectedWords.get(word);
+        if (values != null) {
+            return values;
+        }
+        values = probation.remove(word);
+        if (values != null) {
+            protectedWords.put(word, values);
+            if (protectedWords.size() > protectedCapacity) {
+                // the least recently used protected word gets another chance in probation
+                Map.Entry<String, List<D>> demoted = eldest(protectedWords);
+                protectedWords.remove(demoted.getKey());
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+        return values;
+    }
+
+    private void add(String word, List<D> values) {
+        window.put(word, values);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+        Map.Entry<String, List<D>> candidate = eldest(window);
+        window.remove(candidate.getKey());
+        if (probation.size() + protectedWords.size() < mainCapacity) {
+            probation.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        Map.Entry<String, List<D>> victim = probation.isEmpty() ? eldest(protectedWords) : eldest(probation);
+        evictions++;
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            if (probation.remove(victim.getKey()) == null) {
+                protectedWords.remove(victim.getKey());
+            }
+            probation.put(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * The underlying searches of one word that are running
+     */
+    private static final class Search {
+        private int searchers;
+        // the word changed after one of them started, so what they find may be stale
+        private boolean changed;
+    }
+
+    private static <K, V> Map.Entry<K, V> eldest(LinkedHashMap<K, V> map) {
+        return map.entrySet().iterator().next();
+    }
+
+    /**
+     * Count-min sketch: every word counts in 4 rows, at a position picked by a different hash per row, and its
+     * frequency is the lowest of its 4 counters. Counters stop at 15 and are all halved after a sample of lookups
+     */
+    static final class FrequencySketch {
+
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        // 4 rows of width counters, two 4 bit counters per byte
+        private final byte[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int samples;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity - 1) * 2);
+            table = new byte[SEEDS.length * width / 2];
+            mask = width - 1;
+            sampleSize = 10 * capacity;
+        }
+
+        void increment(String word) {
+            int hash = word.hashCode();
+            int frequency = frequency(hash);
+            if (frequency < 15) {
+                for (int row = 0; row < SEEDS.length; row++) {
+                    int index = index(hash, row);
+                    // only the counters at the minimum, the others already overestimate
+                    if (counter(index) == frequency) {
+                        table[index >>> 1] += (index & 1) == 0 ? 1 : 1 << 4;
+                    }
+                }
+            }
+            if (++samples == sampleSize) {
+                halve();
+            }
+        }
+
+        int frequency(String word) {
+            return frequency(word.hashCode());
+        }
+
+        private int frequency(int hash) {
+            int frequency = 15;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, counter(index(hash, row)));
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int mixed = (hash ^ (hash >>> 16)) * SEEDS[row];
+            return row * (mask + 1) + ((mixed ^ (mixed >>> 15)) & mask);
+        }
+
+        private int counter(int index) {
+            int counters = table[index >>> 1] & 0xFF;
+            return (index & 1) == 0 ? counters & 0x0F : counters >>> 4;
+        }
+
+        private void halve() {
+            samples /= 2;
+            for (int i = 0; i < table.length; i++) {
+                // halves both counters in the byte at once
+                table[i] = (byte) (((table[i] & 0xFF) >>> 1) & 0x77);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.rommert.trie.impl;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the words of a trie that is locked for reading, a chunk of copied words at a time, so a reader holds the
+ * lock only briefly and never copies more than a chunk ahead of what is taken. Every chunk picks up after the last
+ * word of the chunk before. Chunks start small, for callers that only want the first few words, and grow.
+ * <p>
+ * Changes made between chunks may or may not be seen, but words come in order and at most once.
+ *
+ * @see Node#copyWithPrefix(String, String, int)
+ */
+final class ChunkedIterator<D> implements Iterator<Map.Entry<String, List<D>>> {
+
+    /**
+     * Copies up to limit words after the given one, or from the first word when after is null, in order
+     */
+    interface ChunkReader<D> {
+        List<Map.Entry<String, List<D>>> read(String after, int limit);
+    }
+
+    private static final int FIRST_CHUNK = 16;
+    private static final int MAX_CHUNK = 1024;
+
+    private final ChunkReader<D> reader;
+    private Iterator<Map.Entry<String, List<D>>> chunk;
+    private int chunkSize = FIRST_CHUNK;
+    private boolean lastChunk;
+    private Map.Entry<String, List<D>> next;
+
+    ChunkedIterator(ChunkReader<D> reader) {
+        this.reader = reader;
+        read(null);
+        advance();
+    }
+
+    /**
+     * @return the next word without taking it, or null when there are no more
+     */
+    Map.Entry<String, List<D>> peek() {
+        return next;
+    }
+
+    private void read(String after) {
+        List<Map.Entry<String, List<D>>> entries = reader.read(after, chunkSize);
+        lastChunk = entries.size() < chunkSize;
+        chunkSize = Math.min(chunkSize * 2, MAX_CHUNK);
+        chunk = entries.iterator();
+    }
+
+    private void advance() {
+        if (!chunk.hasNext() && !lastChunk) {
+            read(next.getKey());
+        }
+        next = chunk.hasNext() ? chunk.next() : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, List<D>> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, List<D>> result = next;
+        advance();
+        return result;
+    }
+}
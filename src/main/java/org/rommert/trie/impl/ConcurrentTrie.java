@@ -0,0 +1,495 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread-safe radix trie. The words starting with a given letter form an immutable subtree that hangs in its own
+ * slot. A writer copies the path from the slot down to the node it changes and swaps the new subtree in with a
+ * compare-and-set on the slot, retrying if another writer got there first. So:
+ * <ul>
+ *     <li>search never blocks and always sees a complete subtree, never a half split node</li>
+ *     <li>writers of words with a different first letter never contend</li>
+ *     <li>the lists returned by search are immutable snapshots</li>
+ * </ul>
+ * Iteration is weakly consistent: each first letter is read at one moment, but different letters may be read at
+ * different moments.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class ConcurrentTrie<D> implements Trie<D> {
+
+    private final ConcurrentNavigableMap<Character, AtomicReference<Branch<D>>> slots = new ConcurrentSkipListMap<>();
+    // values of the empty word, which has no first letter to hang under
+    private final AtomicReference<List<D>> emptyWordValues = new AtomicReference<>(Collections.emptyList());
+
+    @Override
+    public void insert(String word, D data) {
+        if (word.isEmpty()) {
+            emptyWordValues.updateAndGet(values -> Branch.append(values, data));
+            return;
+        }
+        AtomicReference<Branch<D>> slot = slots.computeIfAbsent(word.charAt(0), letter -> new AtomicReference<>());
+        while (true) {
+            Branch<D> current = slot.get();
+            Branch<D> updated = current == null ? Branch.leaf(word, data) : current.insert(word, 0, data);
+            if (slot.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<D> search(String word) {
+        return search((CharSequence) word);
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        if (word.length() == 0) {
+            return emptyWordValues.get();
+        }
+        AtomicReference<Branch<D>> slot = slots.get(word.charAt(0));
+        Branch<D> branch = slot == null ? null : slot.get();
+        int offset = 0;
+        while (branch != null && branch.labelMatches(word, offset)) {
+            offset += branch.label.length();
+            if (offset == word.length()) {
+                return branch.values;
+            }
+            branch = branch.child(word.charAt(offset));
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void delete(String word) {
+        if (word.isEmpty()) {
+            emptyWordValues.set(Collections.emptyList());
+            return;
+        }
+        AtomicReference<Branch<D>> slot = slots.get(word.charAt(0));
+        if (slot == null) {
+            return;
+        }
+        while (true) {
+            Branch<D> current = slot.get();
+            if (current == null) {
+                return;
+            }
+            Branch<D> updated = current.delete(word, 0);
+            if (updated == current || slot.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        if (prefix.isEmpty()) {
+            Iterator<Map.Entry<String, List<D>>> emptyWord = emptyWordValues.get().isEmpty()
+                    ? Collections.emptyIterator()
+                    : Collections.singletonList(entry("", emptyWordValues.get())).iterator();
+            return new ChainedIterator<>(emptyWord, slots.values().iterator());
+        }
+        String pathToStart = "";
+        Branch<D> branch = slotRoot(prefix.charAt(0));
+        int offset = 0;
+        while (branch != null) {
+            if (!branch.labelMatches(prefix, offset)) {
+                // the prefix may still end halfway the label of the branch
+                return branch.label.startsWith(prefix.substring(offset))
+                        ? new BranchIterator<>(branch, prefix.substring(0, offset))
+                        : Collections.emptyIterator();
+            }
+            offset += branch.label.length();
+            if (offset == prefix.length()) {
+                return new BranchIterator<>(branch, pathToStart);
+            }
+            pathToStart = prefix.substring(0, offset);
+            branch = branch.child(prefix.charAt(offset));
+        }
+        return Collections.emptyIterator();
+    }
+
+    @Override
+    public long countWithPrefix(String prefix) {
+        if (prefix.isEmpty()) {
+            long count = emptyWordValues.get().isEmpty() ? 0 : 1;
+            for (AtomicReference<Branch<D>> slot : slots.values()) {
+                Branch<D> branch = slot.get();
+                count += branch == null ? 0 : branch.nrOfValueNodes;
+            }
+            return count;
+        }
+        Branch<D> branch = slotRoot(prefix.charAt(0));
+        int offset = 0;
+        while (branch != null) {
+            if (!branch.labelMatches(prefix, offset)) {
+                return branch.label.startsWith(prefix.substring(offset)) ? branch.nrOfValueNodes : 0;
+            }
+            offset += branch.label.length();
+            if (offset == prefix.length()) {
+                return branch.nrOfValueNodes;
+            }
+            branch = branch.child(prefix.charAt(offset));
+        }
+        return 0;
+    }
+
+    @Override
+    public String toDOTString() {
+        StringBuilder dot = new StringBuilder("digraph G\n{\n_[label=\"\"]\n");
+        for (AtomicReference<Branch<D>> slot : slots.values()) {
+            Branch<D> branch = slot.get();
+            if (branch != null) {
+                appendDOT(dot, branch, "_");
+            }
+        }
+        return dot.append("}").toString();
+    }
+
+    private void appendDOT(StringBuilder dot, Branch<D> branch, String parentName) {
+        String nodeName = parentName + branch.label;
+        dot.append(parentName).append(" -> ").append(nodeName).append("\n");
+        dot.append(nodeName).append("[label=\"").append(branch.label);
+        if (!branch.values.isEmpty()) {
+            dot.append(branch.values);
+        }
+        dot.append("\"]\n");
+        for (Branch<D> child : branch.children) {
+            appendDOT(dot, child, nodeName);
+        }
+    }
+
+    private Branch<D> slotRoot(char letter) {
+        AtomicReference<Branch<D>> slot = slots.get(letter);
+        return slot == null ? null : slot.get();
+    }
+
+    private static <D> Map.Entry<String, List<D>> entry(String word, List<D> values) {
+        return new AbstractMap.SimpleImmutableEntry<>(word, values);
+    }
+
+    /**
+     * Immutable radix tree node. Every change returns a new node and leaves this one untouched, so a reader that
+     * holds on to a node always sees one consistent version of its subtree
+     */
+    private static final class Branch<D> {
+
+        private static final Branch<?>[] NO_CHILDREN = new Branch<?>[0];
+
+        private final String label;
+        private final List<D> values;
+        // sorted on first letter of the label
+        private final Branch<D>[] children;
+        private final int nrOfValueNodes;
+
+        private Branch(String label, List<D> values, Branch<D>[] children) {
+            this.label = label;
+            this.values = values;
+            this.children = children;
+            int count = values.isEmpty() ? 0 : 1;
+            for (Branch<D> child : children) {
+                count += child.nrOfValueNodes;
+            }
+            this.nrOfValueNodes = count;
+        }
+
+        private static <D> Branch<D> leaf(String label, D data) {
+            return new Branch<>(label, Collections.singletonList(data), newArray(0));
+        }
+
+        private static <D> List<D> append(List<D> values, D data) {
+            return AppendOnlyList.append(values, data);
+        }
+
+        private Branch<D> insert(String word, int offset, D data) {
+            int matched = commonLength(word, offset);
+            if (matched < label.length()) {
+                // split: the common part of the label becomes a new node above this one
+                Branch<D> rest = new Branch<>(label.substring(matched), values, children);
+                if (offset + matched == word.length()) {
+                    return new Branch<>(label.substring(0, matched), Collections.singletonList(data), array(rest));
+                }
+                Branch<D> leaf = leaf(word.substring(offset + matched), data);
+                return new Branch<>(label.substring(0, matched), Collections.emptyList(), sorted(rest, leaf));
+            }
+            int end = offset + matched;
+            if (end == word.length()) {
+                return new Branch<>(label, append(values, data), children);
+            }
+            int index = indexOf(word.charAt(end));
+            if (index >= 0) {
+                return withChild(index, children[index].insert(word, end, data));
+            }
+            return new Branch<>(label, values, inserted(-index - 1, leaf(word.substring(end), data)));
+        }
+
+        /**
+         * @return the new version of this node, null when nothing is left of it, or this when the word wasn't found
+         */
+        private Branch<D> delete(String word, int offset) {
+            if (!labelMatches(word, offset)) {
+                return this;
+            }
+            int end = offset + label.length();
+            if (end == word.length()) {
+                if (values.isEmpty()) {
+                    return this;
+                }
+                return withoutValues(children);
+            }
+            int index = indexOf(word.charAt(end));
+            if (index < 0) {
+                return this;
+            }
+            Branch<D> child = children[index].delete(word, end);
+            if (child == children[index]) {
+                return this;
+            }
+            if (child != null) {
+                return withChild(index, child);
+            }
+            return values.isEmpty() ? withoutValues(removed(index)) : new Branch<>(label, values, removed(index));
+        }
+
+        /**
+         * Builds this node without values on top of the given children, merging it with an only child and removing
+         * it when it has no children
+         */
+        private Branch<D> withoutValues(Branch<D>[] remainingChildren) {
+            if (remainingChildren.length == 0) {
+                return null;
+            }
+            if (remainingChildren.length == 1) {
+                Branch<D> onlyChild = remainingChildren[0];
+                return new Branch<>(label + onlyChild.label, onlyChild.values, onlyChild.children);
+            }
+            return new Branch<>(label, Collections.emptyList(), remainingChildren);
+        }
+
+        private Branch<D> child(char letter) {
+            int index = indexOf(letter);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private boolean labelMatches(CharSequence word, int offset) {
+            int length = label.length();
+            if (word.length() - offset < length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (label.charAt(i) != word.charAt(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int commonLength(String word, int offset) {
+            int max = Math.min(label.length(), word.length() - offset);
+            int i = 0;
+            while (i < max && label.charAt(i) == word.charAt(offset + i)) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Binary search on first letters
+         * @return index of the child starting with letter, or (-(insertion point) - 1)
+         */
+        private int indexOf(char letter) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char key = children[middle].label.charAt(0);
+                if (key < letter) {
+                    low = middle + 1;
+                } else if (key > letter) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private Branch<D> withChild(int index, Branch<D> child) {
+            Branch<D>[] copy = children.clone();
+            copy[index] = child;
+            return new Branch<>(label, values, copy);
+        }
+
+        private Branch<D>[] inserted(int index, Branch<D> child) {
+            Branch<D>[] copy = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, index, copy, index + 1, children.length - index);
+            copy[index] = child;
+            return copy;
+        }
+
+        private Branch<D>[] removed(int index) {
+            Branch<D>[] copy = Arrays.copyOf(children, children.length - 1);
+            System.arraycopy(children, index + 1, copy, index, children.length - index - 1);
+            return copy;
+        }
+
+        /**
+         * @return an array of the given length, or the shared empty one
+         */
+        @SuppressWarnings("unchecked")
+        private static <D> Branch<D>[] newArray(int length) {
+            return (Branch<D>[]) (length == 0 ? NO_CHILDREN : new Branch<?>[length]);
+        }
+
+        private static <D> Branch<D>[] array(Branch<D> child) {
+            Branch<D>[] array = newArray(1);
+            array[0] = child;
+            return array;
+        }
+
+        private static <D> Branch<D>[] sorted(Branch<D> first, Branch<D> second) {
+            Branch<D>[] array = newArray(2);
+            boolean inOrder = first.label.charAt(0) < second.label.charAt(0);
+            array[0] = inOrder ? first : second;
+            array[1] = inOrder ? second : first;
+            return array;
+        }
+    }
+
+    /**
+     * Immutable list of the values of a word that appends in amortized constant time. The versions of a list share
+     * one array that only grows: a version sees the first size elements, which are never written again. Appending to
+     * the newest version claims the next free element of the array with a compare-and-set, so it writes only that
+     * element; appending to an older version, or to a full array, copies. A writer whose change loses the race for
+     * its slot leaves a claimed element unused, its retry copies
+     */
+    private static final class AppendOnlyList<D> extends AbstractList<D> implements RandomAccess {
+
+        private static final int MIN_CAPACITY = 4;
+
+        private final Object[] elements;
+        // number of elements of the array taken by any version
+        private final AtomicInteger used;
+        private final int size;
+
+        private AppendOnlyList(Object[] elements, AtomicInteger used, int size) {
+            this.elements = elements;
+            this.used = used;
+            this.size = size;
+        }
+
+        static <D> List<D> append(List<D> values, D data) {
+            if (values instanceof AppendOnlyList) {
+                AppendOnlyList<D> list = (AppendOnlyList<D>) values;
+                if (list.size < list.elements.length && list.used.compareAndSet(list.size, list.size + 1)) {
+                    // published with the branch that holds the new version, readers of older versions never look here
+                    list.elements[list.size] = data;
+                    return new AppendOnlyList<>(list.elements, list.used, list.size + 1);
+                }
+            }
+            Object[] elements = Arrays.copyOf(values.toArray(), Math.max(MIN_CAPACITY, values.size() * 2));
+            elements[values.size()] = data;
+            return new AppendOnlyList<>(elements, new AtomicInteger(values.size() + 1), values.size() + 1);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public D get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            }
+            return (D) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Depth first, pre-order walk over one version of a subtree, yielding the words with values in lexicographic
+     * order
+     */
+    private static class BranchIterator<D> implements Iterator<Map.Entry<String, List<D>>> {
+
+        private final Deque<Branch<D>> stack = new ArrayDeque<>();
+        private final Deque<Integer> parentLengths = new ArrayDeque<>();
+        private final StringBuilder path;
+        private Map.Entry<String, List<D>> next;
+
+        private BranchIterator(Branch<D> start, String pathToStart) {
+            path = new StringBuilder(pathToStart);
+            stack.push(start);
+            parentLengths.push(pathToStart.length());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !stack.isEmpty()) {
+                Branch<D> branch = stack.pop();
+                path.setLength(parentLengths.pop());
+                path.append(branch.label);
+                for (int i = branch.children.length - 1; i >= 0; i--) {
+                    stack.push(branch.children[i]);
+                    parentLengths.push(path.length());
+                }
+                if (!branch.values.isEmpty()) {
+                    next = entry(path.toString(), branch.values);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, List<D>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, List<D>> result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**
+     * Iterates the empty word followed by the subtrees of all slots, reading each slot only when it is reached
+     */
+    private static class ChainedIterator<D> implements Iterator<Map.Entry<String, List<D>>> {
+
+        private final Iterator<AtomicReference<Branch<D>>> slots;
+        private Iterator<Map.Entry<String, List<D>>> current;
+
+        private ChainedIterator(Iterator<Map.Entry<String, List<D>>> first, Iterator<AtomicReference<Branch<D>>> slots) {
+            this.current = first;
+            this.slots = slots;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && slots.hasNext()) {
+                Branch<D> branch = slots.next().get();
+                if (branch != null) {
+                    current = new BranchIterator<>(branch, "");
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, List<D>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
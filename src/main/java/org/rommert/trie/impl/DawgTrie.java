@@ -0,0 +1,413 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Immutable, minimized copy of a trie for large read-only dictionaries, made with {@link Node#minimize()}. Where a
+ * trie only shares prefixes, this directed acyclic word graph (DAWG) also shares suffixes: all subtrees that accept
+ * the same endings, like every "heid" and "lijk" at the end of a word, are merged into one. States and edges are
+ * numbered and kept in a few shared arrays, one letter per edge, without per state objects.
+ * <p>
+ * Merged states can't hold the values of a word, so every word gets a rank instead: its number in lexicographic
+ * order, which is computed while searching by adding up how many words are skipped on every edge taken. The rank is a
+ * minimal perfect hash of the words and the index of their values in a side table. The words starting with a
+ * prefix have consecutive ranks, so their values and counts take no walk at all.
+ * <p>
+ * All state is final and never changes after construction, so it can be shared between any number of threads
+ * without locking. Changing methods throw {@link UnsupportedOperationException}.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public final class DawgTrie<D> implements Trie<D> {
+
+    private final int root;
+    // the edges of state s are firstEdge[s] up to firstEdge[s + 1], sorted on their letter
+    private final int[] firstEdge;
+    private final BitSet accepting;
+    // number of words accepted from state s on, so counting the words with a prefix takes no walk
+    private final int[] nrOfWords;
+    private final char[] letters;
+    private final int[] targets;
+    // number of words that come before the ones reached through an edge, counted from the state it leaves
+    private final int[] skipped;
+    // values of the word with rank r are values[valueStart[r]] up to values[valueStart[r + 1]], or just values[r]
+    // when valueStart is null because every word has one value
+    private final Object[] values;
+    private final int[] valueStart;
+
+    private DawgTrie(Builder<D> builder, int root) {
+        this.root = root;
+        firstEdge = Arrays.copyOf(builder.firstEdge, builder.stateCount + 1);
+        accepting = (BitSet) builder.accepting.clone();
+        nrOfWords = Arrays.copyOf(builder.nrOfWords, builder.stateCount);
+        letters = Arrays.copyOf(builder.letters, builder.edgeCount);
+        targets = Arrays.copyOf(builder.targets, builder.edgeCount);
+        skipped = Arrays.copyOf(builder.skipped, builder.edgeCount);
+        values = Arrays.copyOf(builder.values, builder.valueLength);
+        valueStart = builder.valueLength == builder.wordCount ? null : Arrays.copyOf(builder.valueStart, builder.wordCount + 1);
+    }
+
+    @Override
+    public void insert(String word, D data) {
+        throw new UnsupportedOperationException("a minimized trie is read-only");
+    }
+
+    @Override
+    public void delete(String word) {
+        throw new UnsupportedOperationException("a minimized trie is read-only");
+    }
+
+    @Override
+    public List<D> search(String word) {
+        return search((CharSequence) word);
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        int rank = rank(word);
+        return rank == -1 ? Collections.emptyList() : valuesOf(rank, rank + 1);
+    }
+
+    /**
+     * @return the position of word among all words in lexicographic order, or -1 when it isn't in the trie
+     */
+    public int rank(CharSequence word) {
+        int state = root;
+        int rank = 0;
+        for (int i = 0; i < word.length(); i++) {
+            int edge = edge(state, word.charAt(i));
+            if (edge == -1) {
+                return -1;
+            }
+            rank += skipped[edge];
+            state = targets[edge];
+        }
+        return accepting.get(state) ? rank : -1;
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        int state = root;
+        int rank = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            int edge = edge(state, prefix.charAt(i));
+            if (edge == -1) {
+                return Collections.emptyIterator();
+            }
+            rank += skipped[edge];
+            state = targets[edge];
+        }
+        return new PrefixIterator(state, prefix, rank);
+    }
+
+    /**
+     * Number of words that start with the given prefix, in O(length of prefix)
+     */
+    @Override
+    public long countWithPrefix(String prefix) {
+        int state = prefixState(prefix);
+        return state == -1 ? 0 : nrOfWords[state];
+    }
+
+    @Override
+    public long countValuesWithPrefix(String prefix) {
+        int[] ranks = prefixRanks(prefix);
+        return ranks == null ? 0 : valueIndex(ranks[1]) - valueIndex(ranks[0]);
+    }
+
+    /**
+     * The values of the words starting with prefix are one range of the side table, so this only finds its bounds
+     */
+    @Override
+    public Stream<D> valuesWithPrefix(String prefix) {
+        int[] ranks = prefixRanks(prefix);
+        return ranks == null ? Stream.empty() : valuesOf(ranks[0], ranks[1]).stream();
+    }
+
+    /**
+     * Shared states are written once, with an edge per letter, so the graph shows which endings were merged
+     */
+    @Override
+    public String toDOTString() {
+        StringBuilder dot = new StringBuilder("digraph G\n{\n_[label=\"\"]\n");
+        for (int state = 0; state < getNrOfStates(); state++) {
+            String name = state == root ? "_" : "s" + state;
+            if (state != root) {
+                dot.append(name).append("[label=\"").append(accepting.get(state) ? "*" : "").append("\"]\n");
+            }
+            for (int edge = firstEdge[state]; edge < firstEdge[state + 1]; edge++) {
+                int target = targets[edge];
+                dot.append(name).append(" -> ").append(target == root ? "_" : "s" + target).append("[label=\"");
+                char letter = letters[edge];
+                if (letter == '"' || letter == '\\') {
+                    dot.append('\\');
+                }
+                dot.append(letter).append("\"]\n");
+            }
+        }
+        return dot.append("}").toString();
+    }
+
+    int getNrOfStates() {
+        return firstEdge.length - 1;
+    }
+
+    int getNrOfEdges() {
+        return letters.length;
+    }
+
+    /**
+     * @return the number of words
+     */
+    public int size() {
+        return nrOfWords[root];
+    }
+
+    private int prefixState(String prefix) {
+        int state = root;
+        for (int i = 0; i < prefix.length() && state != -1; i++) {
+            int edge = edge(state, prefix.charAt(i));
+            state = edge == -1 ? -1 : targets[edge];
+        }
+        return state;
+    }
+
+    /**
+     * @return the ranks of the words starting with prefix, from inclusive and to exclusive, or null when there are
+     * none
+     */
+    private int[] prefixRanks(String prefix) {
+        int state = root;
+        int rank = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            int edge = edge(state, prefix.charAt(i));
+            if (edge == -1) {
+                return null;
+            }
+            rank += skipped[edge];
+            state = targets[edge];
+        }
+        return new int[]{rank, rank + nrOfWords[state]};
+    }
+
+    /**
+     * Binary search on the letters of the edges
+     * @return the edge, or -1 when the state has no edge for letter
+     */
+    private int edge(int state, char letter) {
+        int low = firstEdge[state];
+        int high = firstEdge[state + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleLetter = letters[middle];
+            if (middleLetter < letter) {
+                low = middle + 1;
+            } else if (middleLetter > letter) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int valueIndex(int rank) {
+        return valueStart == null ? rank : valueStart[rank];
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<D> valuesOf(int fromRank, int toRank) {
+        int from = valueIndex(fromRank);
+        int to = valueIndex(toRank);
+        if (from == to) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList((List<D>) Arrays.asList(values).subList(from, to));
+    }
+
+    /**
+     * Depth first walk that keeps the current word in one StringBuilder and the edges still to take in int arrays.
+     * Words come out in rank order, so the rank of the next word is simply counted up
+     */
+    private class PrefixIterator implements Iterator<Map.Entry<String, List<D>>> {
+
+        private int[] stack = new int[16];
+        // length of the word in front of the letter of the edge at the same position in the stack
+        private int[] parentLengths = new int[16];
+        private int size;
+        private final StringBuilder word;
+        private int rank;
+        private Map.Entry<String, List<D>> next;
+
+        private PrefixIterator(int state, String prefix, int rank) {
+            word = new StringBuilder(prefix);
+            this.rank = rank;
+            if (accepting.get(state)) {
+                next = entry();
+            }
+            pushEdges(state);
+            if (next == null) {
+                advance();
+            }
+        }
+
+        private void pushEdges(int state) {
+            int edges = firstEdge[state + 1] - firstEdge[state];
+            if (size + edges > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size + edges));
+                parentLengths = Arrays.copyOf(parentLengths, stack.length);
+            }
+            for (int edge = firstEdge[state + 1] - 1; edge >= firstEdge[state]; edge--) {
+                stack[size] = edge;
+                parentLengths[size++] = word.length();
+            }
+        }
+
+        private Map.Entry<String, List<D>> entry() {
+            Map.Entry<String, List<D>> entry = new AbstractMap.SimpleImmutableEntry<>(word.toString(),
+                    valuesOf(rank, rank + 1));
+            rank++;
+            return entry;
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && size > 0) {
+                int edge = stack[--size];
+                word.setLength(parentLengths[size]);
+                word.append(letters[edge]);
+                int state = targets[edge];
+                pushEdges(state);
+                if (accepting.get(state)) {
+                    next = entry();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, List<D>> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, List<D>> result = next;
+            advance();
+            return result;
+        }
+    }
+
+    /**
+     * Builds the graph bottom up: a state is only added after the states its edges lead to, and a state equal to
+     * one added before, with the same accepting flag and the same edges, is not added again but returned. Values are
+     * added separately, for one word at a time in lexicographic order
+     */
+    static final class Builder<D> {
+
+        private final Map<Signature, Integer> states = new HashMap<>();
+        private int[] firstEdge = new int[17];
+        private final BitSet accepting = new BitSet();
+        // number of words accepted from state s
+        private int[] nrOfWords = new int[16];
+        private int stateCount;
+        private char[] letters = new char[16];
+        private int[] targets = new int[16];
+        private int[] skipped = new int[16];
+        private int edgeCount;
+        private Object[] values = new Object[16];
+        private int valueLength;
+        private int[] valueStart = new int[17];
+        private int wordCount;
+
+        /**
+         * @param edgeLetters letters of the edges, sorted
+         * @param edgeTargets states the edges lead to, returned by this method before
+         * @return the state
+         */
+        int state(boolean isAccepting, char[] edgeLetters, int[] edgeTargets) {
+            Signature signature = new Signature(isAccepting, edgeLetters, edgeTargets);
+            Integer existing = states.get(signature);
+            if (existing != null) {
+                return existing;
+            }
+            int state = stateCount++;
+            if (stateCount + 1 > firstEdge.length) {
+                firstEdge = Arrays.copyOf(firstEdge, firstEdge.length * 2);
+                nrOfWords = Arrays.copyOf(nrOfWords, firstEdge.length);
+            }
+            if (edgeCount + edgeLetters.length > letters.length) {
+                int capacity = Math.max(letters.length * 2, edgeCount + edgeLetters.length);
+                letters = Arrays.copyOf(letters, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                skipped = Arrays.copyOf(skipped, capacity);
+            }
+            int words = isAccepting ? 1 : 0;
+            for (int i = 0; i < edgeLetters.length; i++) {
+                letters[edgeCount] = edgeLetters[i];
+                targets[edgeCount] = edgeTargets[i];
+                skipped[edgeCount++] = words;
+                words += nrOfWords[edgeTargets[i]];
+            }
+            accepting.set(state, isAccepting);
+            nrOfWords[state] = words;
+            firstEdge[state + 1] = edgeCount;
+            states.put(signature, state);
+            return state;
+        }
+
+        void addWord(List<D> wordValues) {
+            if (wordCount + 2 > valueStart.length) {
+                valueStart = Arrays.copyOf(valueStart, valueStart.length * 2);
+            }
+            if (valueLength + wordValues.size() > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, valueLength + wordValues.size()));
+            }
+            for (D value : wordValues) {
+                values[valueLength++] = value;
+            }
+            valueStart[++wordCount] = valueLength;
+        }
+
+        DawgTrie<D> build(int root) {
+            if (nrOfWords[root] != wordCount) {
+                throw new IllegalStateException(nrOfWords[root] + " words in the graph, " + wordCount + " added");
+            }
+            return new DawgTrie<>(this, root);
+        }
+    }
+
+    private static final class Signature {
+        private final boolean accepting;
+        private final char[] letters;
+        private final int[] targets;
+        private final int hash;
+
+        private Signature(boolean accepting, char[] letters, int[] targets) {
+            this.accepting = accepting;
+            this.letters = letters;
+            this.targets = targets;
+            hash = 31 * (31 * Boolean.hashCode(accepting) + Arrays.hashCode(letters)) + Arrays.hashCode(targets);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) o;
+            return accepting == other.accepting && hash == other.hash && Arrays.equals(letters, other.letters)
+                    && Arrays.equals(targets, other.targets);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
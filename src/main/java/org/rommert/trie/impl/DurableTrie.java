@@ -0,0 +1,515 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.FuzzyMatch;
+import org.rommert.trie.interfaces.Trie;
+import org.rommert.trie.interfaces.ValueCodec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Trie whose changes survive a crash. Every insert and delete is applied to an in-memory {@link Node} and appended
+ * to a write-ahead log, and returns once the log is synced to disk. Writers that arrive while the log is being
+ * synced wait for the sync after it, which then writes all of their records at once: a burst of concurrent writers
+ * shares one fsync (group commit).
+ * <p>
+ * A checkpoint writes the whole trie to a file in the {@link MappedTrie} format, after which the log up to it can go.
+ * Writers are held up only while the trie is copied with {@link Node#snapshot()}; the file is written from the copy.
+ * Checkpoints are taken with {@link #checkpoint()}, and every interval when one is given to
+ * {@link #open(Path, ValueCodec, Duration)}. On open the newest checkpoint is loaded and the log after it replayed.
+ * A record torn by a crash fails its checksum; it was never acknowledged, so it is cut off.
+ * <p>
+ * Files in the directory, numbers big endian:
+ * <pre>
+ * checkpoint-&lt;n&gt;.trie  the trie after change number n
+ * wal-&lt;n&gt;.log         changes from number n on, each one a record of
+ *                      int length of the rest, int CRC32 of the rest,
+ *                      long number, byte insert or delete, int wordLength, char[wordLength] word, encoded value
+ * </pre>
+ * Reads lock the trie briefly, so they see every change that was made before them, synced or not. Prefix iteration
+ * copies the words a chunk at a time, locking the trie per chunk.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class DurableTrie<D> implements Trie<D>, Closeable {
+
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String CHECKPOINT_SUFFIX = ".trie";
+    private static final String LOG_PREFIX = "wal-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String TEMPORARY_CHECKPOINT = "checkpoint.tmp";
+    // a new log file is started after this many bytes, or after a checkpoint
+    private static final long LOG_FILE_SIZE = 64 << 20;
+
+    private final Path directory;
+    private final ValueCodec<D> codec;
+    private final ScheduledExecutorService checkpointer;
+
+    // guarded by node: the trie, the records not yet written to the log and the number of the last change
+    private final Node<D> node;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long lastChange;
+    private boolean closed;
+
+    // guarded by syncLock; one writer at a time syncs, the others wait for it
+    private final Object syncLock = new Object();
+    private long syncedChange;
+    private boolean syncing;
+    // set under syncLock, but also read by change, which holds the trie lock instead
+    private volatile IOException failure;
+
+    // only used by the writer that syncs
+    private FileChannel log;
+    private long logSize;
+    private volatile boolean startNewLog;
+    private volatile int nrOfSyncs;
+
+    private DurableTrie(Path directory, ValueCodec<D> codec, Duration checkpointInterval) throws IOException {
+        this.directory = directory;
+        this.codec = codec;
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(TEMPORARY_CHECKPOINT));
+        long checkpoint = newest(files(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX));
+        node = checkpoint < 0 ? new Node<>() : load(directory.resolve(CHECKPOINT_PREFIX + checkpoint + CHECKPOINT_SUFFIX));
+        lastChange = Math.max(0, checkpoint);
+        replay();
+        syncedChange = lastChange;
+        if (checkpointInterval == null) {
+            checkpointer = null;
+        } else {
+            checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "trie checkpoint " + directory);
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = checkpointInterval.toMillis();
+            checkpointer.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException | RuntimeException e) {
+                    // the log still holds every change, the next checkpoint tries again
+                }
+            }, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens the trie stored in directory, or starts an empty one when there is none, without periodic checkpoints
+     * @param directory Directory that holds the checkpoint and log files, created if it doesn't exist
+     * @param codec Codec for the Data elements, the same every time the directory is opened
+     */
+    public static <D> DurableTrie<D> open(Path directory, ValueCodec<D> codec) throws IOException {
+        return new DurableTrie<>(directory, codec, null);
+    }
+
+    /**
+     * Opens the trie stored in directory and takes a checkpoint in the background every checkpointInterval
+     * @see #open(Path, ValueCodec)
+     */
+    public static <D> DurableTrie<D> open(Path directory, ValueCodec<D> codec, Duration checkpointInterval)
+            throws IOException {
+        return new DurableTrie<>(directory, codec, checkpointInterval);
+    }
+
+    /**
+     * @throws UncheckedIOException when the change could not be logged; the trie then refuses further changes
+     */
+    @Override
+    public void insert(String word, D data) {
+        long change;
+        synchronized (node) {
+            change = change(INSERT, word, data);
+        }
+        awaitSynced(change);
+    }
+
+    /**
+     * @throws UncheckedIOException when the change could not be logged; the trie then refuses further changes
+     */
+    @Override
+    public void delete(String word) {
+        long change;
+        synchronized (node) {
+            change = change(DELETE, word, null);
+        }
+        awaitSynced(change);
+    }
+
+    @Override
+    public List<D> search(String word) {
+        synchronized (node) {
+            List<D> values = node.search(word);
+            return values.isEmpty() ? values : Collections.unmodifiableList(new ArrayList<>(values));
+        }
+    }
+
+    /**
+     * The words are copied a chunk at a time, each while the trie is locked, so a long scan holds writers up only
+     * briefly. Changes made between chunks may or may not be seen, but words come in order and at most once
+     */
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        return new ChunkedIterator<>((after, limit) -> {
+            synchronized (node) {
+                return node.copyWithPrefix(prefix, after, limit);
+            }
+        });
+    }
+
+    @Override
+    public long countWithPrefix(String prefix) {
+        synchronized (node) {
+            return node.countWithPrefix(prefix);
+        }
+    }
+
+    @Override
+    public List<FuzzyMatch<D>> searchFuzzy(String word, int maxEdits) {
+        synchronized (node) {
+            return node.searchFuzzy(word, maxEdits);
+        }
+    }
+
+    @Override
+    public String toDOTString() {
+        synchronized (node) {
+            return node.toDOTString();
+        }
+    }
+
+    /**
+     * Writes the trie as it is now to a new checkpoint file and deletes the checkpoints and log files it replaces.
+     * Changes made while the file is written are not in it, they stay in the log
+     */
+    public synchronized void checkpoint() throws IOException {
+        FrozenTrie<D> snapshot;
+        long change;
+        synchronized (node) {
+            snapshot = node.snapshot();
+            change = lastChange;
+        }
+        // log files can only be deleted as a whole, so changes after this one go to a new one
+        startNewLog = true;
+        Path temporary = directory.resolve(TEMPORARY_CHECKPOINT);
+        MappedTrie.write(snapshot, codec, temporary);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT_PREFIX + change + CHECKPOINT_SUFFIX),
+                StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        for (long older : files(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX)) {
+            if (older < change) {
+                Files.deleteIfExists(directory.resolve(CHECKPOINT_PREFIX + older + CHECKPOINT_SUFFIX));
+            }
+        }
+        // a log file holds the changes up to where the next one starts
+        List<Long> logs = files(LOG_PREFIX, LOG_SUFFIX);
+        for (int i = 0; i + 1 < logs.size() && logs.get(i + 1) <= change + 1; i++) {
+            Files.deleteIfExists(directory.resolve(LOG_PREFIX + logs.get(i) + LOG_SUFFIX));
+        }
+    }
+
+    /**
+     * Waits for the changes made so far to be synced, and stops taking checkpoints. Later changes throw
+     * {@link IllegalStateException}
+     */
+    @Override
+    public void close() throws IOException {
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+        }
+        long change;
+        synchronized (node) {
+            closed = true;
+            change = lastChange;
+        }
+        try {
+            awaitSynced(change);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            synchronized (syncLock) {
+                if (log != null) {
+                    log.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops without syncing, as if the process died, leaving the files as they are. For tests
+     */
+    void crash() throws IOException {
+        if (checkpointer != null) {
+            checkpointer.shutdownNow();
+        }
+        synchronized (node) {
+            closed = true;
+        }
+        synchronized (syncLock) {
+            if (log != null) {
+                log.close();
+            }
+        }
+    }
+
+    /**
+     * @return number of times the log was synced, which is lower than the number of changes when writers overlap
+     */
+    int getNrOfSyncs() {
+        return nrOfSyncs;
+    }
+
+    /**
+     * Applies a change to the trie and queues its record for the log. Called with the trie locked
+     * @return number of the change
+     */
+    private long change(byte operation, String word, D value) {
+        if (closed) {
+            throw new IllegalStateException("trie is closed");
+        }
+        // once the log failed, a change could never be logged, so readers must not see it either
+        if (failure != null) {
+            throw new UncheckedIOException("write-ahead log failed", failure);
+        }
+        byte[] record;
+        try {
+            record = record(lastChange + 1, operation, word, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // apply before logging, so a change the trie refuses is never replayed
+        if (operation == INSERT) {
+            node.insert(word, value);
+        } else {
+            node.delete(word);
+        }
+        pending.write(record, 0, record.length);
+        return ++lastChange;
+    }
+
+    private byte[] record(long change, byte operation, String word, D value) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(32 + 2 * word.length());
+        DataOutputStream output = new DataOutputStream(body);
+        output.writeLong(change);
+        output.writeByte(operation);
+        output.writeInt(word.length());
+        output.writeChars(word);
+        if (operation == INSERT) {
+            codec.write(value, output);
+        }
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        ByteBuffer record = ByteBuffer.allocate(8 + bytes.length);
+        record.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes);
+        return record.array();
+    }
+
+    /**
+     * Returns once the given change is synced. When no sync is running this thread syncs, taking along the records
+     * of every writer that queued one in the meantime
+     */
+    private void awaitSynced(long change) {
+        boolean interrupted = false;
+        try {
+            synchronized (syncLock) {
+                while (true) {
+                    if (failure != null) {
+                        throw new UncheckedIOException("write-ahead log failed", failure);
+                    }
+                    if (syncedChange >= change) {
+                        return;
+                    }
+                    if (!syncing) {
+                        break;
+                    }
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        // the change is already made, it has to be synced before returning
+                        interrupted = true;
+                    }
+                }
+                syncing = true;
+            }
+            long synced = 0;
+            IOException error = null;
+            try {
+                synced = sync();
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (syncLock) {
+                syncing = false;
+                if (error == null) {
+                    syncedChange = synced;
+                } else {
+                    failure = error;
+                }
+                syncLock.notifyAll();
+                if (failure != null) {
+                    throw new UncheckedIOException("write-ahead log failed", failure);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes all queued records to the log and syncs it
+     * @return number of the last change written
+     */
+    private long sync() throws IOException {
+        byte[] batch;
+        long last;
+        synchronized (node) {
+            batch = pending.toByteArray();
+            pending.reset();
+            last = lastChange;
+        }
+        if (batch.length == 0) {
+            return last;
+        }
+        if (log == null || startNewLog || logSize >= LOG_FILE_SIZE) {
+            startNewLog = false;
+            if (log != null) {
+                log.close();
+            }
+            // the first record in the batch is the one after the last synced change
+            log = FileChannel.open(directory.resolve(LOG_PREFIX + (syncedChange + 1) + LOG_SUFFIX),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            logSize = 0;
+            syncDirectory();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(batch);
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        log.force(false);
+        logSize += batch.length;
+        nrOfSyncs++;
+        return last;
+    }
+
+    /**
+     * Applies the log records after the checkpoint that was loaded. A torn or corrupt record can only be the last
+     * one written, it and anything after it in the same file are cut off
+     */
+    private void replay() throws IOException {
+        List<Long> logs = files(LOG_PREFIX, LOG_SUFFIX);
+        for (int i = 0; i < logs.size(); i++) {
+            Path file = directory.resolve(LOG_PREFIX + logs.get(i) + LOG_SUFFIX);
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file));
+            int valid = 0;
+            while (records.remaining() >= 8) {
+                int length = records.getInt();
+                int checksum = records.getInt();
+                if (length < 13 || length > records.remaining()) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(records.array(), records.position(), length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                // limit is not chained: before Java 9 it returns a Buffer, which would need a cast back
+                ByteBuffer record = records.slice();
+                record.limit(length);
+                records.position(records.position() + length);
+                valid = records.position();
+                apply(record);
+            }
+            if (valid < records.limit()) {
+                if (i < logs.size() - 1) {
+                    throw new IOException("corrupt record in " + file + " at " + valid + ", before the last log file");
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+            }
+        }
+        if (!logs.isEmpty()) {
+            // appending to the last file instead of starting a new one, so there is no empty file at every open
+            Path last = directory.resolve(LOG_PREFIX + logs.get(logs.size() - 1) + LOG_SUFFIX);
+            log = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            logSize = log.size();
+        }
+    }
+
+    private void apply(ByteBuffer record) {
+        long change = record.getLong();
+        byte operation = record.get();
+        char[] word = new char[record.getInt()];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = record.getChar();
+        }
+        // the checkpoint may already hold changes from the start of the file
+        if (change <= lastChange) {
+            return;
+        }
+        if (operation == INSERT) {
+            node.insert(new String(word), codec.read(record));
+        } else {
+            node.delete(new String(word));
+        }
+        lastChange = change;
+    }
+
+    /**
+     * Builds the trie from a checkpoint in one pass, the words come out of it sorted
+     */
+    private Node<D> load(Path checkpoint) throws IOException {
+        try (MappedTrie<D> mapped = MappedTrie.open(checkpoint, codec)) {
+            List<Map.Entry<String, D>> entries = new ArrayList<>();
+            mapped.prefixIterator("").forEachRemaining(entry -> entry.getValue().forEach(value ->
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), value))));
+            return Node.fromSorted(entries.iterator());
+        }
+    }
+
+    /**
+     * @return the numbers in the names of the files with the given prefix and suffix, sorted
+     */
+    private List<Long> files(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> numbers.add(Long.parseLong(
+                            name.substring(prefix.length(), name.length() - suffix.length()))));
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private static long newest(List<Long> numbers) {
+        return numbers.isEmpty() ? -1 : numbers.get(numbers.size() - 1);
+    }
+
+    /**
+     * Makes a created or renamed file in the directory survive a crash
+     */
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
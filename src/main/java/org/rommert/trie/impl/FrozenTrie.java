@@ -0,0 +1,416 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable, densely packed copy of a trie for serving reads, made with {@link Node#snapshot()}. There are no
+ * parent pointers, no spare capacity and no per node objects: nodes are numbered breadth first, so the children of
+ * a node are a contiguous range of numbers, and every node's label, first letter, children and values are found
+ * through a few shared arrays. Chains of nodes without values and with a single child are joined into one node.
+ * <p>
+ * All state is final and never changes after construction, so a snapshot can be shared between any number of
+ * threads without locking. Changing methods throw {@link UnsupportedOperationException}.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public final class FrozenTrie<D> implements Trie<D> {
+
+    private static final int ROOT = 0;
+
+    // label of node n is labels[labelStart[n]] up to labels[labelStart[n + 1]]
+    private final char[] labels;
+    private final int[] labelStart;
+    // the children of node n are the nodes childStart[n] up to childStart[n + 1], sorted on their first letter
+    private final int[] childStart;
+    private final char[] firstLetters;
+    // values of node n are values[valueStart[n]] up to values[valueStart[n + 1]]
+    private final Object[] values;
+    private final int[] valueStart;
+    // number of value nodes in the subtree of node n, including n itself
+    private final int[] nrOfValueNodes;
+
+    private FrozenTrie(Builder<D> builder) {
+        int size = builder.nodeCount;
+        labels = Arrays.copyOf(builder.labels, builder.labelLength);
+        labelStart = Arrays.copyOf(builder.labelStart, size + 1);
+        childStart = Arrays.copyOf(builder.childStart, size + 1);
+        firstLetters = new char[size];
+        for (int node = 1; node < size; node++) {
+            firstLetters[node] = labels[labelStart[node]];
+        }
+        values = Arrays.copyOf(builder.values, builder.valueLength);
+        valueStart = Arrays.copyOf(builder.valueStart, size + 1);
+        nrOfValueNodes = new int[size];
+        // children always come after their parent, so going backwards every subtree is complete when it's added
+        for (int node = size - 1; node >= 0; node--) {
+            if (valueStart[node + 1] > valueStart[node]) {
+                nrOfValueNodes[node]++;
+            }
+            for (int child = childStart[node]; child < childStart[node + 1]; child++) {
+                nrOfValueNodes[node] += nrOfValueNodes[child];
+            }
+        }
+    }
+
+    @Override
+    public void insert(String word, D data) {
+        throw new UnsupportedOperationException("a frozen trie is read-only");
+    }
+
+    @Override
+    public void delete(String word) {
+        throw new UnsupportedOperationException("a frozen trie is read-only");
+    }
+
+    @Override
+    public List<D> search(String word) {
+        return search((CharSequence) word);
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        int node = ROOT;
+        int i = 0;
+        while (i < word.length()) {
+            node = childStartingWith(node, word.charAt(i));
+            if (node == -1 || !labelMatches(node, word, i)) {
+                return Collections.emptyList();
+            }
+            i += labelLength(node);
+        }
+        return valuesOf(node);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        int node = ROOT;
+        int i = 0;
+        while (i < prefix.length()) {
+            node = childStartingWith(node, prefix.charAt(i));
+            if (node == -1) {
+                return Collections.emptyIterator();
+            }
+            int length = labelLength(node);
+            if (prefix.length() - i <= length) {
+                // the prefix ends within this label
+                for (int j = 1; i + j < prefix.length(); j++) {
+                    if (labels[labelStart[node] + j] != prefix.charAt(i + j)) {
+                        return Collections.emptyIterator();
+                    }
+                }
+                return new PrefixIterator(node, prefix.substring(0, i));
+            }
+            if (!labelMatches(node, prefix, i)) {
+                return Collections.emptyIterator();
+            }
+            i += length;
+        }
+        return new PrefixIterator(node, prefix);
+    }
+
+    /**
+     * Number of words that start with the given prefix, in O(length of prefix)
+     */
+    @Override
+    public long countWithPrefix(String prefix) {
+        int node = prefixNode(prefix);
+        return node == -1 ? 0 : nrOfValueNodes[node];
+    }
+
+    /**
+     * Walks the subtree without building the words, so it takes time in the number of nodes below the prefix only
+     */
+    @Override
+    public Stream<D> valuesWithPrefix(String prefix) {
+        int node = prefixNode(prefix);
+        if (node == -1) {
+            return Stream.empty();
+        }
+        Spliterator<D> spliterator = Spliterators.spliteratorUnknownSize(
+                new ValueIterator(node), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * @return the topmost node whose subtree holds exactly the words starting with prefix, which may end halfway
+     * its label, or -1 when no word starts with prefix
+     */
+    private int prefixNode(String prefix) {
+        int node = ROOT;
+        int i = 0;
+        while (i < prefix.length()) {
+            node = childStartingWith(node, prefix.charAt(i));
+            if (node == -1) {
+                return -1;
+            }
+            int length = labelLength(node);
+            for (int j = 1; j < length && i + j < prefix.length(); j++) {
+                if (labels[labelStart[node] + j] != prefix.charAt(i + j)) {
+                    return -1;
+                }
+            }
+            i += length;
+        }
+        return node;
+    }
+
+    @Override
+    public String toDOTString() {
+        StringBuilder dot = new StringBuilder("digraph G\n{\n_[label=\"\"]\n");
+        appendDOT(dot, ROOT, "_");
+        return dot.append("}").toString();
+    }
+
+    private void appendDOT(StringBuilder dot, int node, String nodeName) {
+        for (int child = childStart[node]; child < childStart[node + 1]; child++) {
+            String childNodeName = "n" + child;
+            dot.append(nodeName).append(" -> ").append(childNodeName).append("\n");
+            dot.append(childNodeName).append("[label=\"").append(labels, labelStart[child], labelLength(child));
+            if (valueStart[child + 1] > valueStart[child]) {
+                dot.append(valuesOf(child));
+            }
+            dot.append("\"]\n");
+            appendDOT(dot, child, childNodeName);
+        }
+    }
+
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        appendString(output, ROOT, 0);
+        return output.toString();
+    }
+
+    private void appendString(StringBuilder output, int node, int level) {
+        for (int i = 0; i < level; i++) {
+            output.append("    ");
+        }
+        output.append(labels, labelStart[node], labelLength(node));
+        if (valueStart[node + 1] > valueStart[node]) {
+            output.append(valuesOf(node));
+        }
+        output.append(":\n");
+        for (int child = childStart[node]; child < childStart[node + 1]; child++) {
+            appendString(output, child, level + 1);
+            output.append("\n");
+        }
+    }
+
+    protected int getNrOfValueNodes() {
+        return nrOfValueNodes[ROOT];
+    }
+
+    /**
+     * @return the number of nodes, which is at most the number of nodes of the trie it was made from
+     */
+    int getNrOfNodes() {
+        return labelStart.length - 1;
+    }
+
+    private int labelLength(int node) {
+        return labelStart[node + 1] - labelStart[node];
+    }
+
+    /**
+     * Binary search on the first letters of the children
+     * @return the child, or -1 when no child starts with letter
+     */
+    private int childStartingWith(int node, char letter) {
+        int low = childStart[node];
+        int high = childStart[node + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleLetter = firstLetters[middle];
+            if (middleLetter < letter) {
+                low = middle + 1;
+            } else if (middleLetter > letter) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private boolean labelMatches(int node, CharSequence word, int offset) {
+        int length = labelLength(node);
+        if (word.length() - offset < length) {
+            return false;
+        }
+        int start = labelStart[node];
+        for (int i = 1; i < length; i++) {
+            if (labels[start + i] != word.charAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<D> valuesOf(int node) {
+        if (valueStart[node + 1] == valueStart[node]) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList((List<D>) Arrays.asList(values).subList(valueStart[node], valueStart[node + 1]));
+    }
+
+    /**
+     * Depth first walk that keeps the current word in one StringBuilder and the nodes still to visit in int arrays
+     */
+    private class PrefixIterator implements Iterator<Map.Entry<String, List<D>>> {
+
+        private int[] stack = new int[16];
+        // length of the word in front of the label of the node at the same position in the stack
+        private int[] parentLengths = new int[16];
+        private int size;
+        private final StringBuilder word;
+        private Map.Entry<String, List<D>> next;
+
+        private PrefixIterator(int node, String parentWord) {
+            word = new StringBuilder(parentWord);
+            push(node, parentWord.length());
+            advance();
+        }
+
+        private void push(int node, int parentLength) {
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size * 2);
+                parentLengths = Arrays.copyOf(parentLengths, size * 2);
+            }
+            stack[size] = node;
+            parentLengths[size++] = parentLength;
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && size > 0) {
+                int node = stack[--size];
+                word.setLength(parentLengths[size]);
+                word.append(labels, labelStart[node], labelLength(node));
+                for (int child = childStart[node + 1] - 1; child >= childStart[node]; child--) {
+                    push(child, word.length());
+                }
+                if (valueStart[node + 1] > valueStart[node]) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(word.toString(), valuesOf(node));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, List<D>> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, List<D>> result = next;
+            advance();
+            return result;
+        }
+    }
+
+    /**
+     * Depth first walk over the values of a subtree, with the nodes still to visit in an int array
+     */
+    private class ValueIterator implements Iterator<D> {
+
+        private int[] stack = new int[16];
+        private int size;
+        private int value;
+        private int valueEnd;
+
+        private ValueIterator(int node) {
+            stack[size++] = node;
+            advance();
+        }
+
+        private void advance() {
+            while (value == valueEnd && size > 0) {
+                int node = stack[--size];
+                int children = childStart[node + 1] - childStart[node];
+                if (size + children > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size + children));
+                }
+                for (int child = childStart[node + 1] - 1; child >= childStart[node]; child--) {
+                    stack[size++] = child;
+                }
+                value = valueStart[node];
+                valueEnd = valueStart[node + 1];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return value < valueEnd;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public D next() {
+            if (value == valueEnd) {
+                throw new NoSuchElementException();
+            }
+            D next = (D) values[value++];
+            if (value == valueEnd) {
+                advance();
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Collects the nodes of a trie in breadth first order, the root first. For every node the number of children
+     * must be given, those children are then the next nodes added after all nodes already announced
+     */
+    static final class Builder<D> {
+
+        private char[] labels = new char[64];
+        private int labelLength;
+        private int[] labelStart = new int[17];
+        private int[] childStart = new int[17];
+        private Object[] values = new Object[16];
+        private int valueLength;
+        private int[] valueStart = new int[17];
+        private int nodeCount;
+        private int announcedNodes = 1;
+
+        void add(CharSequence label, List<D> nodeValues, int nrOfChildren) {
+            if (nodeCount + 2 > labelStart.length) {
+                labelStart = Arrays.copyOf(labelStart, labelStart.length * 2);
+                childStart = Arrays.copyOf(childStart, childStart.length * 2);
+                valueStart = Arrays.copyOf(valueStart, valueStart.length * 2);
+            }
+            if (labelLength + label.length() > labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelLength + label.length()));
+            }
+            for (int i = 0; i < label.length(); i++) {
+                labels[labelLength++] = label.charAt(i);
+            }
+            if (valueLength + nodeValues.size() > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, valueLength + nodeValues.size()));
+            }
+            for (D value : nodeValues) {
+                values[valueLength++] = value;
+            }
+            childStart[nodeCount] = announcedNodes;
+            announcedNodes += nrOfChildren;
+            nodeCount++;
+            labelStart[nodeCount] = labelLength;
+            valueStart[nodeCount] = valueLength;
+            childStart[nodeCount] = announcedNodes;
+        }
+
+        FrozenTrie<D> build() {
+            if (nodeCount != announcedNodes) {
+                throw new IllegalStateException(announcedNodes + " nodes announced, " + nodeCount + " added");
+            }
+            return new FrozenTrie<>(this);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.FuzzyMatch;
+import org.rommert.trie.interfaces.Trie;
+import org.rommert.trie.interfaces.TrieListener;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps a trie and reports the time of every insert, search and delete to a {@link TrieListener}. When the trie is
+ * a {@link Node} the listener also gets its structural events, see {@link Node#setListener}. Other calls are passed
+ * through untimed; the batch methods fall back to one timed call per word.
+ * <p>
+ * Instrumentation is opt-in: an unwrapped trie doesn't read the clock at all
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class InstrumentedTrie<D> implements Trie<D> {
+
+    private final Trie<D> trie;
+    private final TrieListener listener;
+
+    public InstrumentedTrie(Trie<D> trie, TrieListener listener) {
+        this.trie = trie;
+        this.listener = listener;
+        if (trie instanceof Node) {
+            ((Node<D>) trie).setListener(listener);
+        }
+    }
+
+    @Override
+    public void insert(String word, D data) {
+        long start = System.nanoTime();
+        trie.insert(word, data);
+        listener.inserted(System.nanoTime() - start);
+    }
+
+    @Override
+    public List<D> search(String word) {
+        long start = System.nanoTime();
+        List<D> values = trie.search(word);
+        listener.searched(System.nanoTime() - start);
+        return values;
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        long start = System.nanoTime();
+        List<D> values = trie.search(word);
+        listener.searched(System.nanoTime() - start);
+        return values;
+    }
+
+    @Override
+    public void delete(String word) {
+        long start = System.nanoTime();
+        trie.delete(word);
+        listener.deleted(System.nanoTime() - start);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        return trie.prefixIterator(prefix);
+    }
+
+    @Override
+    public long countWithPrefix(String prefix) {
+        return trie.countWithPrefix(prefix);
+    }
+
+    @Override
+    public long countValuesWithPrefix(String prefix) {
+        return trie.countValuesWithPrefix(prefix);
+    }
+
+    @Override
+    public List<FuzzyMatch<D>> searchFuzzy(String word, int maxEdits) {
+        return trie.searchFuzzy(word, maxEdits);
+    }
+
+    @Override
+    public String toDOTString() {
+        return trie.toDOTString();
+    }
+
+    @Override
+    public void writeDOT(Appendable out) throws IOException {
+        trie.writeDOT(out);
+    }
+
+    /**
+     * @return the trie that is instrumented
+     */
+    public Trie<D> getTrie() {
+        return trie;
+    }
+}
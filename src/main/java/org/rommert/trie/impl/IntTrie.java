@@ -0,0 +1,216 @@
+package org.rommert.trie.impl;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Radix trie specialized for int values, such as word positions. It has the array-backed structure of
+ * {@link ArrayTrie}, but stores the positions of a word in a growable int[] instead of a list of boxed Integers,
+ * and hands them out as an int iterator or IntStream, so no Integer is ever created.
+ * <p>
+ * {@link #freeze()} compresses the positions of every word into a byte array with the differences between
+ * consecutive positions as variable length numbers; ascending positions then mostly take one or two bytes each.
+ * A frozen word is decompressed again when a position is added to it.
+ */
+public class IntTrie extends AbstractArrayTrie {
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    // positions of a slot are either in positionArrays (with a count) or, when frozen, in compressedPositions.
+    // The count of a freed slot is the index of the next free slot
+    private int[][] positionArrays = new int[INITIAL_CAPACITY][];
+    private byte[][] compressedPositions = new byte[INITIAL_CAPACITY][];
+    private int[] positionCounts = new int[INITIAL_CAPACITY];
+    private int slotsUsed;
+    private int freeSlot = NONE;
+
+    /**
+     * Add a word and a position to the trie
+     * @param word Word to add
+     * @param position Value to store with the word
+     */
+    public void insert(String word, int position) {
+        int slot = valueSlotOf(insertPath(word));
+        if (compressedPositions[slot] != null) {
+            positionArrays[slot] = decompress(compressedPositions[slot], positionCounts[slot]);
+            compressedPositions[slot] = null;
+        }
+        int[] positions = positionArrays[slot];
+        if (positionCounts[slot] == positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(2, positions.length * 2));
+            positionArrays[slot] = positions;
+        }
+        positions[positionCounts[slot]++] = position;
+    }
+
+    /**
+     * @return number of positions stored for the word
+     */
+    public int count(CharSequence word) {
+        int node = find(word);
+        return node == NONE || valueSlot[node] == NONE ? 0 : positionCounts[valueSlot[node]];
+    }
+
+    /**
+     * Iterate over the positions of a word without boxing them. The iterator reads the live positions, so it should
+     * not be used across changes to the same word
+     * @return positions in the order they were added, empty when the word is not in the trie
+     */
+    public PrimitiveIterator.OfInt positions(CharSequence word) {
+        int node = find(word);
+        return node == NONE || valueSlot[node] == NONE ? IntStream.empty().iterator() : positionsOf(valueSlot[node]);
+    }
+
+    /**
+     * @return positions of the word as a stream, empty when the word is not in the trie
+     * @see #positions(CharSequence)
+     */
+    public IntStream search(CharSequence word) {
+        int node = find(word);
+        if (node == NONE || valueSlot[node] == NONE) {
+            return IntStream.empty();
+        }
+        int slot = valueSlot[node];
+        Spliterator.OfInt spliterator = Spliterators.spliterator(positionsOf(slot), positionCounts[slot],
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.NONNULL);
+        return StreamSupport.intStream(spliterator, false);
+    }
+
+    /**
+     * @return words that start with the given prefix, in lexicographic order
+     */
+    public Stream<String> keysWithPrefix(String prefix) {
+        Iterator<String> words = new PrefixIterator<String>(prefix) {
+            @Override
+            String element(String word, int slot) {
+                return word;
+            }
+        };
+        Spliterator<String> spliterator = Spliterators.spliteratorUnknownSize(words,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Compress the positions of all words. Use when the trie is mostly complete; adding to a frozen word
+     * decompresses just that word
+     */
+    public void freeze() {
+        for (int slot = 0; slot < slotsUsed; slot++) {
+            if (positionArrays[slot] != null) {
+                compressedPositions[slot] = compress(positionArrays[slot], positionCounts[slot]);
+                positionArrays[slot] = null;
+            }
+        }
+    }
+
+    @Override
+    void appendValues(StringBuilder output, int slot) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        positionsOf(slot).forEachRemaining((int position) -> joiner.add(Integer.toString(position)));
+        output.append(joiner);
+    }
+
+    private PrimitiveIterator.OfInt positionsOf(int slot) {
+        if (compressedPositions[slot] != null) {
+            return new CompressedIterator(compressedPositions[slot], positionCounts[slot]);
+        }
+        return Arrays.stream(positionArrays[slot], 0, positionCounts[slot]).iterator();
+    }
+
+    @Override
+    int newValueSlot() {
+        int slot;
+        if (freeSlot != NONE) {
+            slot = freeSlot;
+            freeSlot = positionCounts[slot];
+        } else {
+            if (slotsUsed == positionArrays.length) {
+                positionArrays = Arrays.copyOf(positionArrays, slotsUsed * 2);
+                compressedPositions = Arrays.copyOf(compressedPositions, slotsUsed * 2);
+                positionCounts = Arrays.copyOf(positionCounts, slotsUsed * 2);
+            }
+            slot = slotsUsed++;
+        }
+        positionArrays[slot] = NO_POSITIONS;
+        positionCounts[slot] = 0;
+        return slot;
+    }
+
+    @Override
+    void freeValueSlot(int slot) {
+        positionArrays[slot] = null;
+        compressedPositions[slot] = null;
+        positionCounts[slot] = freeSlot;
+        freeSlot = slot;
+    }
+
+    /**
+     * Stores each position as the difference with the previous one, zigzag encoded so that a smaller position
+     * costs no more than a larger one, in groups of 7 bits with the high bit set on all but the last group
+     */
+    static byte[] compress(int[] positions, int count) {
+        byte[] buffer = new byte[count * 5];
+        int length = 0;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = positions[i] - previous;
+            previous = positions[i];
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[length++] = (byte) zigzag;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    static int[] decompress(byte[] compressed, int count) {
+        int[] positions = new int[Math.max(2, count)];
+        CompressedIterator iterator = new CompressedIterator(compressed, count);
+        for (int i = 0; i < count; i++) {
+            positions[i] = iterator.nextInt();
+        }
+        return positions;
+    }
+
+    private static class CompressedIterator implements PrimitiveIterator.OfInt {
+
+        private final byte[] compressed;
+        private final int count;
+        private int index;
+        private int offset;
+        private int previous;
+
+        private CompressedIterator(byte[] compressed, int count) {
+            this.compressed = compressed;
+            this.count = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = compressed[offset++];
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            index++;
+            return previous;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+import org.rommert.trie.interfaces.ValueCodec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only trie that lives in a file. The file is mapped into memory and lookups walk the mapped bytes directly,
+ * so opening is instant, nothing is deserialized up front, and the trie does not have to fit in the heap; the
+ * operating system pages in what is used. Only the Data elements of a found word are decoded.
+ * <p>
+ * File layout, all numbers big endian:
+ * <pre>
+ * header: int magic, int version, int offset of the root node
+ * node:   int nrOfValueNodes in subtree
+ *         int labelLength, char[labelLength] label
+ *         int childCount, childCount times (char first letter of child label, int offset of child), sorted on letter
+ *         int valueCount, valueCount encoded Data elements
+ * </pre>
+ * Nodes are written children first, so a whole trie is written in one streaming pass. A single mapping limits the
+ * file to 2 GB.
+ *
+ * @param <D> Data type that is stored in the trie
+ */
+public class MappedTrie<D> implements Trie<D>, Closeable {
+
+    private static final int MAGIC = 0x52545249; // "RTRI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int CHILD_ENTRY_SIZE = 6;
+    // a single mapping, and the int offsets in the file, reach this far
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ValueCodec<D> codec;
+    private final int root;
+
+    private MappedTrie(FileChannel channel, MappedByteBuffer buffer, ValueCodec<D> codec) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.codec = codec;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a trie file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported trie file version " + buffer.getInt(4));
+        }
+        this.root = buffer.getInt(8);
+    }
+
+    /**
+     * Map a file written by {@link #write(Trie, ValueCodec, Path)}
+     * @param file File to open
+     * @param codec Codec that was used to write the file
+     * @return read-only trie backed by the file
+     */
+    public static <D> MappedTrie<D> open(Path file, ValueCodec<D> codec) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedTrie<>(channel, buffer, codec);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write all words of a trie, with their Data elements, to a file in one streaming pass
+     * @param trie Trie to write, any implementation
+     * @param codec Codec for the Data elements
+     * @param file File to write, replaced if it exists
+     * @throws IOException also when the file would exceed 2 GB
+     */
+    public static <D> void write(Trie<D> trie, ValueCodec<D> codec, Path file) throws IOException {
+        write(trie, codec, file, MAX_FILE_SIZE);
+    }
+
+    /**
+     * @param maxFileSize size in bytes the file may not exceed, lower than the real limit in tests
+     */
+    static <D> void write(Trie<D> trie, ValueCodec<D> codec, Path file, long maxFileSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer<D> writer = new Writer<>(new BufferedOutputStream(Channels.newOutputStream(channel)), codec,
+                    maxFileSize);
+            int rootOffset;
+            try {
+                trie.prefixIterator("").forEachRemaining(entry -> writer.add(entry.getKey(), entry.getValue()));
+                rootOffset = writer.finish();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.output.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rootOffset).flip();
+            channel.write(header, 0);
+        }
+    }
+
+    @Override
+    public void insert(String word, D data) {
+        throw new UnsupportedOperationException("a mapped trie is read-only");
+    }
+
+    @Override
+    public void delete(String word) {
+        throw new UnsupportedOperationException("a mapped trie is read-only");
+    }
+
+    @Override
+    public List<D> search(String word) {
+        return search((CharSequence) word);
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        int node = root;
+        int offset = 0;
+        while (offset < word.length()) {
+            int child = child(node, word.charAt(offset));
+            if (child < 0 || !labelMatches(child, word, offset)) {
+                return Collections.emptyList();
+            }
+            node = child;
+            offset += labelLength(child);
+        }
+        return values(node);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        int[] labelStart = new int[1];
+        int node = findPrefixNode(prefix, labelStart);
+        if (node < 0) {
+            return Collections.emptyIterator();
+        }
+        return new PrefixIterator(node, prefix.substring(0, labelStart[0]));
+    }
+
+    @Override
+    public long countWithPrefix(String prefix) {
+        int node = findPrefixNode(prefix, new int[1]);
+        return node < 0 ? 0 : buffer.getInt(node);
+    }
+
+    @Override
+    public String toDOTString() {
+        StringBuilder dot = new StringBuilder("digraph G\n{\n_[label=\"\"]\n");
+        appendDOT(dot, root, "_");
+        return dot.append("}").toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void appendDOT(StringBuilder dot, int node, String nodeName) {
+        int childCount = childCount(node);
+        for (int i = 0; i < childCount; i++) {
+            int child = buffer.getInt(childTable(node) + i * CHILD_ENTRY_SIZE + 2);
+            String childNodeName = "n" + child;
+            dot.append(nodeName).append(" -> ").append(childNodeName).append("\n");
+            dot.append(childNodeName).append("[label=\"").append(label(child));
+            List<D> values = values(child);
+            if (!values.isEmpty()) {
+                dot.append(values);
+            }
+            dot.append("\"]\n");
+            appendDOT(dot, child, childNodeName);
+        }
+    }
+
+    /**
+     * Finds the topmost node whose subtree holds exactly the words starting with prefix
+     * @param labelStart receives the offset in prefix where the label of the node starts
+     * @return offset of the node, or -1 when no word starts with prefix
+     */
+    private int findPrefixNode(String prefix, int[] labelStart) {
+        int node = root;
+        int offset = 0;
+        while (offset < prefix.length()) {
+            int child = child(node, prefix.charAt(offset));
+            if (child < 0) {
+                return -1;
+            }
+            labelStart[0] = offset;
+            if (!labelMatches(child, prefix, offset)) {
+                // the prefix may still end halfway the label of the child
+                return label(child).startsWith(prefix.substring(offset)) ? child : -1;
+            }
+            node = child;
+            offset += labelLength(child);
+        }
+        return node;
+    }
+
+    private int labelLength(int node) {
+        return buffer.getInt(node + 4);
+    }
+
+    private String label(int node) {
+        int length = labelLength(node);
+        char[] label = new char[length];
+        for (int i = 0; i < length; i++) {
+            label[i] = buffer.getChar(node + 8 + 2 * i);
+        }
+        return new String(label);
+    }
+
+    private boolean labelMatches(int node, CharSequence word, int offset) {
+        int length = labelLength(node);
+        if (word.length() - offset < length) {
+            return false;
+        }
+        int start = node + 8;
+        for (int i = 0; i < length; i++) {
+            if (buffer.getChar(start + 2 * i) != word.charAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int childCountPosition(int node) {
+        return node + 8 + 2 * labelLength(node);
+    }
+
+    private int childCount(int node) {
+        return buffer.getInt(childCountPosition(node));
+    }
+
+    private int childTable(int node) {
+        return childCountPosition(node) + 4;
+    }
+
+    /**
+     * Binary search on the first letters in the child table
+     * @return offset of the child starting with letter, or -1
+     */
+    private int child(int node, char letter) {
+        int table = childTable(node);
+        int low = 0;
+        int high = childCount(node) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char key = buffer.getChar(table + middle * CHILD_ENTRY_SIZE);
+            if (key < letter) {
+                low = middle + 1;
+            } else if (key > letter) {
+                high = middle - 1;
+            } else {
+                return buffer.getInt(table + middle * CHILD_ENTRY_SIZE + 2);
+            }
+        }
+        return -1;
+    }
+
+    private List<D> values(int node) {
+        int position = childTable(node) + childCount(node) * CHILD_ENTRY_SIZE;
+        int valueCount = buffer.getInt(position);
+        if (valueCount == 0) {
+            return Collections.emptyList();
+        }
+        ByteBuffer values = buffer.duplicate();
+        values.position(position + 4);
+        List<D> result = new ArrayList<>(valueCount);
+        for (int i = 0; i < valueCount; i++) {
+            result.add(codec.read(values));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Depth first, pre-order walk over the mapped nodes, yielding the words with values in lexicographic order
+     */
+    private class PrefixIterator implements Iterator<Map.Entry<String, List<D>>> {
+
+        private final Deque<Integer> stack = new ArrayDeque<>();
+        private final Deque<Integer> parentLengths = new ArrayDeque<>();
+        private final StringBuilder path;
+        private Map.Entry<String, List<D>> next;
+
+        private PrefixIterator(int start, String pathToStart) {
+            path = new StringBuilder(pathToStart);
+            stack.push(start);
+            parentLengths.push(pathToStart.length());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !stack.isEmpty()) {
+                int node = stack.pop();
+                path.setLength(parentLengths.pop());
+                path.append(label(node));
+                int table = childTable(node);
+                for (int i = childCount(node) - 1; i >= 0; i--) {
+                    stack.push(buffer.getInt(table + i * CHILD_ENTRY_SIZE + 2));
+                    parentLengths.push(path.length());
+                }
+                List<D> values = values(node);
+                if (!values.isEmpty()) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(path.toString(), values);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, List<D>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, List<D>> result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**
+     * Writes sorted words as a radix tree, children before parents. The nodes on the path of the last word are kept
+     * open on a stack. When the next word branches off, the nodes below the branch point are complete and are
+     * written; where the branch point falls inside a label, an intermediate node is opened there first
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+
+    private static class Writer<D> {
+
+        private final CountingOutputStream counter;
+        private final DataOutputStream output;
+        private final ValueCodec<D> codec;
+        private final long maxFileSize;
+        private final Deque<Open<D>> stack = new ArrayDeque<>();
+        private String previous;
+
+        private Writer(OutputStream output, ValueCodec<D> codec, long maxFileSize) throws IOException {
+            // DataOutputStream.size() stops counting at Integer.MAX_VALUE, so the bytes are counted in a long
+            this.counter = new CountingOutputStream(output);
+            this.output = new DataOutputStream(counter);
+            this.codec = codec;
+            this.maxFileSize = maxFileSize;
+            // room for the header, which is filled in when the root offset is known
+            this.output.write(new byte[HEADER_SIZE]);
+            stack.push(new Open<>(0, "", Collections.emptyList()));
+        }
+
+        private void add(String word, List<D> values) {
+            if (word.isEmpty()) {
+                Open<D> root = stack.peek();
+                root.values = values;
+                root.nrOfValueNodes++;
+                previous = word;
+                return;
+            }
+            closeDeeperThan(previous == null ? 0 : Node.commonPrefixLength(previous, word));
+            stack.push(new Open<>(word.length(), word, values));
+            previous = word;
+        }
+
+        private int finish() {
+            closeDeeperThan(0);
+            int rootOffset = writeNode(stack.pop(), 0);
+            checkSize(counter.count);
+            return rootOffset;
+        }
+
+        private void closeDeeperThan(int depth) {
+            while (stack.peek().depth > depth) {
+                Open<D> closed = stack.pop();
+                Open<D> parent = stack.peek();
+                if (parent.depth < depth) {
+                    parent = new Open<>(depth, closed.word, Collections.emptyList());
+                    stack.push(parent);
+                }
+                parent.childLetters.append(closed.word.charAt(parent.depth));
+                parent.childOffsets.add(writeNode(closed, parent.depth));
+                parent.nrOfValueNodes += closed.nrOfValueNodes;
+            }
+        }
+
+        /**
+         * @return offset of the node in the file
+         */
+        private int writeNode(Open<D> node, int parentDepth) {
+            try {
+                long offset = counter.count;
+                checkSize(offset);
+                output.writeInt(node.nrOfValueNodes);
+                output.writeInt(node.depth - parentDepth);
+                output.writeChars(node.word.substring(parentDepth, node.depth));
+                output.writeInt(node.childOffsets.size());
+                for (int i = 0; i < node.childOffsets.size(); i++) {
+                    output.writeChar(node.childLetters.charAt(i));
+                    output.writeInt(node.childOffsets.get(i));
+                }
+                output.writeInt(node.values.size());
+                for (D value : node.values) {
+                    codec.write(value, output);
+                }
+                return (int) offset;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void checkSize(long size) {
+            if (size > maxFileSize) {
+                throw new UncheckedIOException(new IOException("a mapped trie file can't exceed " + maxFileSize
+                        + " bytes"));
+            }
+        }
+    }
+
+    /**
+     * A node that may still get children. Its label runs from the depth of its parent to its own depth in word
+     */
+    private static class Open<D> {
+        private final int depth;
+        private final String word;
+        private List<D> values;
+        private final StringBuilder childLetters = new StringBuilder();
+        private final List<Integer> childOffsets = new ArrayList<>();
+        private int nrOfValueNodes;
+
+        private Open(int depth, String word, List<D> values) {
+            this.depth = depth;
+            this.word = word;
+            this.values = values;
+            this.nrOfValueNodes = values.isEmpty() ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.TrieListener;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener that keeps counts and latency histograms of everything it hears, safe to share between threads. Pass it
+ * to an {@link InstrumentedTrie} to get timings, and to {@link Node#setListener} to get nodes visited, splits and
+ * collapses
+ */
+public class MetricsListener implements TrieListener {
+
+    private final Histogram insertNanos = new Histogram();
+    private final Histogram searchNanos = new Histogram();
+    private final Histogram deleteNanos = new Histogram();
+    private final Histogram nodesVisited = new Histogram();
+    private final LongAdder splits = new LongAdder();
+    private final LongAdder collapses = new LongAdder();
+
+    @Override
+    public void inserted(long nanos) {
+        insertNanos.record(nanos);
+    }
+
+    @Override
+    public void searched(long nanos) {
+        searchNanos.record(nanos);
+    }
+
+    @Override
+    public void deleted(long nanos) {
+        deleteNanos.record(nanos);
+    }
+
+    @Override
+    public void visited(int nodes) {
+        nodesVisited.record(nodes);
+    }
+
+    @Override
+    public void split() {
+        splits.increment();
+    }
+
+    @Override
+    public void collapsed() {
+        collapses.increment();
+    }
+
+    public Histogram getInsertNanos() {
+        return insertNanos;
+    }
+
+    public Histogram getSearchNanos() {
+        return searchNanos;
+    }
+
+    public Histogram getDeleteNanos() {
+        return deleteNanos;
+    }
+
+    public Histogram getNodesVisited() {
+        return nodesVisited;
+    }
+
+    public long getSplits() {
+        return splits.sum();
+    }
+
+    public long getCollapses() {
+        return collapses.sum();
+    }
+
+    public String toString() {
+        return "insert ns: " + insertNanos + "\n"
+                + "search ns: " + searchNanos + "\n"
+                + "delete ns: " + deleteNanos + "\n"
+                + "nodes visited: " + nodesVisited + "\n"
+                + "splits: " + getSplits() + ", collapses: " + getCollapses() + "\n";
+    }
+}
@@ -1,18 +1,35 @@
 package org.rommert.trie.impl;
 
+import org.rommert.trie.interfaces.FuzzyMatch;
 import org.rommert.trie.interfaces.Trie;
+import org.rommert.trie.interfaces.TrieListener;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Node<T> implements Trie<T> {
 
     private static final String DOT_ROOT__NODE_NAME = "_";
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node<?>[] NO_NODES = new Node<?>[0];
 
     private String name;
     private List<T> values = new ArrayList<>();
     private Node<T> parent;
-    private Map<String, Node<T>> children = new HashMap<>();
+    // cached over the subtree including this node, kept up to date along the path on every change
+    private int nrOfValueNodes;
+    private int nrOfValues;
+    // children are unique by first letter and sorted on it, childKeys[i] holds the first letter of childNodes[i]
+    private char[] childKeys = NO_KEYS;
+    @SuppressWarnings("unchecked")
+    private Node<T>[] childNodes = (Node<T>[]) NO_NODES;
+    private int childCount;
+    // the same for all nodes of a trie, fits in what would otherwise be alignment padding
+    private TrieListener listener = TrieListener.NONE;
 
     // create a root node with no name and null parent
     public Node() {
@@ -27,6 +44,60 @@ public class Node<T> implements Trie<T> {
     private Node(String name, List<T> values) {
         this.name = name;
         this.values.addAll(values);
+        this.nrOfValueNodes = values.isEmpty() ? 0 : 1;
+        this.nrOfValues = values.size();
+    }
+
+    /**
+     * Builds a trie from word/value pairs sorted on word, in one pass and without the splits that inserting them one
+     * by one causes. Pairs with the same word keep their order
+     * @param sortedEntries pairs sorted on word (String natural order); words may not be empty
+     * @throws IllegalArgumentException when the words are not sorted
+     */
+    public static <T> Node<T> fromSorted(Iterator<? extends Map.Entry<String, T>> sortedEntries) {
+        SortedBuilder<T> builder = new SortedBuilder<>();
+        sortedEntries.forEachRemaining(entry -> builder.add(entry.getKey(), entry.getValue()));
+        return builder.build();
+    }
+
+    /**
+     * Sorts the pairs on word, keeping the order of pairs with the same word, and builds a trie from them in one pass
+     * @see #fromSorted(Iterator)
+     */
+    public static <T> Node<T> fromUnsorted(Stream<? extends Map.Entry<String, T>> entries) {
+        return fromSorted(entries.sequential()
+                .sorted(Comparator.comparing(Map.Entry::getKey))
+                .iterator());
+    }
+
+    /**
+     * Builds the subtrees of all first letters on separate cores and joins them under one root
+     * @param sortedEntries pairs sorted on word (String natural order); words may not be empty
+     * @see #fromSorted(Iterator)
+     */
+    public static <T> Node<T> fromSortedParallel(List<? extends Map.Entry<String, T>> sortedEntries) {
+        // sorted input means every first letter is one contiguous run
+        List<List<? extends Map.Entry<String, T>>> runs = new ArrayList<>();
+        int runStart = 0;
+        for (int i = 1; i <= sortedEntries.size(); i++) {
+            if (i == sortedEntries.size()
+                    || sortedEntries.get(i).getKey().charAt(0) != sortedEntries.get(runStart).getKey().charAt(0)) {
+                runs.add(sortedEntries.subList(runStart, i));
+                runStart = i;
+            }
+        }
+        List<Node<T>> subtrees = runs.parallelStream()
+                .map(run -> fromSorted(run.iterator()))
+                .collect(Collectors.toList());
+
+        Node<T> root = new Node<>();
+        for (Node<T> subtree : subtrees) {
+            // a run shares its first letter, so each subtree root has exactly one child
+            Node<T> child = subtree.childNodes[0];
+            child.parent = root;
+            root.addChild(child);
+        }
+        return root;
     }
 
     public void insert(String word, T value) {
@@ -37,7 +108,9 @@ public class Node<T> implements Trie<T> {
         Optional<Node<T>> childMatchingWordOpt = getChildMatchingString(word);
         // exact match wit node: add new values to list with existing values
         if (childMatchingWordOpt.isPresent()) {
-            childMatchingWordOpt.get().getValues().addAll(newValues);
+            Node<T> match = childMatchingWordOpt.get();
+            match.updateCounts(match.getValues().isEmpty() && !newValues.isEmpty() ? 1 : 0, newValues.size());
+            match.getValues().addAll(newValues);
             return;
         }
 
@@ -54,6 +127,7 @@ public class Node<T> implements Trie<T> {
         Optional<Node<T>> leafOpt = getLeafStartingWithLetter(firstLetter);
         if (leafOpt.isPresent()) {
             Node<T> leaf = leafOpt.get();
+            listener.split();
             if (word.length() == 1) {
                 addNode(word, newValues);
                 drop(leaf);
@@ -73,17 +147,184 @@ public class Node<T> implements Trie<T> {
 
 
     public List<T> search(String word) {
-        Optional<Node<T>> childMatchingWord = getChildMatchingString(word);
-        if (childMatchingWord.isPresent()) {
-            return childMatchingWord.get().getValues();
+        return search((CharSequence) word);
+    }
+
+    /**
+     * Walks down the tree by offset into the word, comparing node names in place. Nothing is allocated when the
+     * word is not found
+     */
+    @Override
+    public List<T> search(CharSequence word) {
+        Node<T> node = this;
+        int offset = 0;
+        int visited = 0;
+        while (offset < word.length()) {
+            Node<T> child = node.getChildStartingWith(word.charAt(offset));
+            if (child == null || !child.nameMatches(word, offset)) {
+                listener.visited(visited);
+                return Collections.emptyList();
+            }
+            node = child;
+            offset += child.getName().length();
+            visited++;
         }
+        listener.visited(visited);
+        return node.values.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(node.values);
+    }
 
-        String firstLetter = head(word);
-        Optional<Node<T>> childMatchingFirstLetter = getChildMatchingString(firstLetter);
-        if (childMatchingFirstLetter.isPresent()) {
-            return childMatchingFirstLetter.get().search(tail(word));
+    /**
+     * Walks the tree once, keeping one row of the edit distance table for every letter on the current path. Rows
+     * are computed letter by letter through multi letter names, and a subtree is skipped as soon as every entry of
+     * its row is over maxEdits, because further letters can only add edits
+     */
+    @Override
+    public List<FuzzyMatch<T>> searchFuzzy(String word, int maxEdits) {
+        List<FuzzyMatch<T>> matches = new ArrayList<>();
+        List<int[]> rows = new ArrayList<>();
+        int[] firstRow = new int[word.length() + 1];
+        for (int j = 0; j <= word.length(); j++) {
+            firstRow[j] = j;
+        }
+        rows.add(firstRow);
+        if (!values.isEmpty() && word.length() <= maxEdits) {
+            matches.add(new FuzzyMatch<>("", word.length(), Collections.unmodifiableList(values)));
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < childCount; i++) {
+            childNodes[i].searchFuzzy(word, maxEdits, rows, path, matches);
+        }
+        matches.sort(FuzzyMatch.byDistance());
+        return matches;
+    }
+
+    /**
+     * @param rows rows.get(i) is the row for the first i letters of path, reused between branches
+     * @param path the word up to this node
+     */
+    private void searchFuzzy(String word, int maxEdits, List<int[]> rows, StringBuilder path,
+                             List<FuzzyMatch<T>> matches) {
+        int depth = path.length();
+        for (int k = 0; k < name.length(); k++) {
+            char letter = name.charAt(k);
+            int[] previous = rows.get(depth + k);
+            if (rows.size() == depth + k + 1) {
+                rows.add(new int[word.length() + 1]);
+            }
+            int[] row = rows.get(depth + k + 1);
+            row[0] = previous[0] + 1;
+            int smallest = row[0];
+            for (int j = 1; j <= word.length(); j++) {
+                int substitution = previous[j - 1] + (letter == word.charAt(j - 1) ? 0 : 1);
+                row[j] = Math.min(substitution, Math.min(previous[j], row[j - 1]) + 1);
+                smallest = Math.min(smallest, row[j]);
+            }
+            if (smallest > maxEdits) {
+                path.setLength(depth);
+                return;
+            }
+            path.append(letter);
+        }
+        int distance = rows.get(path.length())[word.length()];
+        if (!values.isEmpty() && distance <= maxEdits) {
+            matches.add(new FuzzyMatch<>(path.toString(), distance, Collections.unmodifiableList(values)));
+        }
+        for (int i = 0; i < childCount; i++) {
+            childNodes[i].searchFuzzy(word, maxEdits, rows, path, matches);
+        }
+        path.setLength(depth);
+    }
+
+    /**
+     * Sorts the batch and keeps the nodes on the path of the previous word, so each word is only walked from where
+     * it stops sharing letters with the previous one
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, List<T>> searchAll(Collection<String> words) {
+        String[] sorted = words.toArray(new String[0]);
+        Arrays.sort(sorted);
+        Map<String, List<T>> results = new LinkedHashMap<>(sorted.length * 2);
+        // nodes on the path of the previous word and the length of the word up to and including each of them
+        Node<T>[] path = (Node<T>[]) new Node<?>[16];
+        int[] pathLengths = new int[16];
+        int depth = 0;
+        path[0] = this;
+        String previous = "";
+        for (String word : sorted) {
+            if (word.equals(previous) && !results.isEmpty()) {
+                continue;
+            }
+            int shared = commonPrefixLength(previous, word);
+            while (pathLengths[depth] > shared) {
+                depth--;
+            }
+            Node<T> node = path[depth];
+            int offset = pathLengths[depth];
+            while (node != null && offset < word.length()) {
+                Node<T> child = node.getChildStartingWith(word.charAt(offset));
+                if (child == null || !child.nameMatches(word, offset)) {
+                    node = null;
+                } else {
+                    node = child;
+                    offset += child.name.length();
+                    if (++depth == path.length) {
+                        path = Arrays.copyOf(path, depth * 2);
+                        pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+                    }
+                    path[depth] = node;
+                    pathLengths[depth] = offset;
+                }
+            }
+            results.put(word, node == null || node.values.isEmpty()
+                    ? Collections.emptyList() : Collections.unmodifiableList(node.values));
+            previous = word;
         }
-        return new ArrayList<>();
+        return results;
+    }
+
+    /**
+     * Sorts the batch and keeps the one letter nodes on the path of the previous word, which inserts never replace,
+     * so each word is inserted from the deepest of them that the word still passes through
+     */
+    @Override
+    public void insertAll(Map<String, ? extends T> entries) {
+        List<Node<T>> path = new ArrayList<>();
+        path.add(this);
+        String previous = "";
+        for (Map.Entry<String, ? extends T> entry : new TreeMap<>(entries).entrySet()) {
+            String word = entry.getKey();
+            // path.get(i) is the node for the first i letters, the word itself must remain for the insert
+            int keep = Math.min(commonPrefixLength(previous, word), word.length() - 1) + 1;
+            while (path.size() > Math.max(1, keep)) {
+                path.remove(path.size() - 1);
+            }
+            Node<T> node = path.get(path.size() - 1);
+            int offset = path.size() - 1;
+            while (offset < word.length() - 1) {
+                Node<T> child = node.getChildStartingWith(word.charAt(offset));
+                if (child == null || child.name.length() != 1) {
+                    break;
+                }
+                node = child;
+                offset++;
+                path.add(node);
+            }
+            node.insert(word.substring(offset), Collections.singletonList(entry.getValue()));
+            previous = word;
+        }
+    }
+
+    /**
+     * @return length of the prefix the two words share, for building from words in order
+     */
+    static int commonPrefixLength(String first, String second) {
+        int max = Math.min(first.length(), second.length());
+        int i = 0;
+        while (i < max && first.charAt(i) == second.charAt(i)) {
+            i++;
+        }
+        return i;
     }
 
     public void delete(String word) {
@@ -91,6 +332,7 @@ public class Node<T> implements Trie<T> {
         Optional<Node<T>> childMatchingWord = getChildMatchingString(word);
         if (childMatchingWord.isPresent()) {
             Node<T> match = childMatchingWord.get();
+            match.updateCounts(match.getValues().isEmpty() ? 0 : -1, -match.getValues().size());
             match.getValues().clear();
             if (match.getNrOfValueNodes() == 0) {
                 drop(match);
@@ -110,8 +352,428 @@ public class Node<T> implements Trie<T> {
         }
     }
 
+    @Override
+    public Iterator<Map.Entry<String, List<T>>> prefixIterator(String prefix) {
+        Node<T> node = getPrefixNode(prefix);
+        if (node == null) {
+            return Collections.emptyIterator();
+        }
+        return new PrefixIterator<>(node, node == this ? "" : node.parent.getWordUpTo(this));
+    }
+
+    /**
+     * Copies the next words starting with prefix, with a copy of their values, for reading a subtree a chunk at a
+     * time. Subtrees of words that come before after are skipped without a visit, so a chunk takes time in the
+     * length of after and the size of the chunk, not in the words before it
+     * @param after the last word of the previous chunk, or null for the first chunk
+     * @param limit maximum number of words to copy
+     * @return the words in order; fewer than limit when there are no more
+     */
+    List<Map.Entry<String, List<T>>> copyWithPrefix(String prefix, String after, int limit) {
+        List<Map.Entry<String, List<T>>> chunk = new ArrayList<>();
+        Node<T> top = getPrefixNode(prefix);
+        if (top == null || limit <= 0) {
+            return chunk;
+        }
+        StringBuilder word = new StringBuilder(top == this ? "" : top.parent.getWordUpTo(this));
+        WalkStack<T> stack = new WalkStack<>();
+        // the depth of a node on the stack is the length of the word in front of its name
+        stack.push(top, 0, word.length());
+        while (stack.size > 0 && chunk.size() < limit) {
+            Node<T> node = stack.pop();
+            word.setLength(stack.poppedDepth);
+            if (node != this) {
+                word.append(node.name);
+            }
+            if (after != null) {
+                if (startsWith(after, word)) {
+                    // after is in this subtree: the word itself is not after it, but some below may be
+                    stack.pushChildren(node, 0, word.length());
+                    continue;
+                }
+                if (compare(word, after) < 0) {
+                    // and so is every word below it
+                    continue;
+                }
+                // past after, everything still to come follows it
+                after = null;
+            }
+            if (!node.values.isEmpty()) {
+                chunk.add(new AbstractMap.SimpleImmutableEntry<>(word.toString(), new ArrayList<>(node.values)));
+            }
+            stack.pushChildren(node, 0, word.length());
+        }
+        return chunk;
+    }
+
+    private static boolean startsWith(String word, CharSequence prefix) {
+        if (prefix.length() > word.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (word.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compare(CharSequence a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return a.charAt(i) - b.charAt(i);
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Reports nodes visited by searches, splits and collapses of this trie to listener, until it is replaced. Call on
+     * the root; nodes added later get the listener of their parent
+     * @param listener {@link TrieListener#NONE} to stop reporting
+     * @see InstrumentedTrie
+     */
+    public void setListener(TrieListener listener) {
+        WalkStack<T> stack = new WalkStack<>();
+        stack.push(this, 0, 0);
+        while (stack.size > 0) {
+            Node<T> node = stack.pop();
+            node.listener = listener;
+            stack.pushChildren(node, 0, 0);
+        }
+    }
+
+    /**
+     * Walks the whole trie to count nodes by depth and by number of children, and estimates the memory it holds
+     */
+    public TrieStatistics statistics() {
+        TrieStatistics statistics = new TrieStatistics();
+        WalkStack<T> stack = new WalkStack<>();
+        stack.push(this, 0, 0);
+        while (stack.size > 0) {
+            Node<T> node = stack.pop();
+            statistics.add(stack.poppedDepth, node.childCount, !node.values.isEmpty(), node.estimateBytes());
+            stack.pushChildren(node, 0, stack.poppedDepth + 1);
+        }
+        return statistics;
+    }
+
+    /**
+     * Shallow size of this node with its name, value list and child arrays, for a 64 bit JVM with compressed
+     * references. The values themselves aren't counted
+     */
+    private long estimateBytes() {
+        // object header, 6 references and 3 ints
+        long bytes = 48;
+        if (name != null) {
+            // String with its array, assuming one byte per letter
+            bytes += 24 + align(16 + name.length());
+        }
+        // ArrayList, its array holds 10 slots after the first add
+        bytes += 24 + (values.isEmpty() ? 0 : align(16 + 4L * Math.max(10, values.size())));
+        if (childKeys.length > 0) {
+            bytes += align(16 + 2L * childKeys.length) + align(16 + 4L * childNodes.length);
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    /**
+     * Makes an immutable, densely packed copy of the trie as it is now, which can be shared between threads without
+     * locking. This trie itself stays writable; take a new snapshot to publish later changes
+     * @see FrozenTrie
+     */
+    public FrozenTrie<T> snapshot() {
+        FrozenTrie.Builder<T> builder = new FrozenTrie.Builder<>();
+        builder.add("", values, childCount);
+        Deque<Node<T>> queue = new ArrayDeque<>(getSortedChildren());
+        StringBuilder label = new StringBuilder();
+        while (!queue.isEmpty()) {
+            Node<T> node = queue.poll();
+            label.setLength(0);
+            label.append(node.name);
+            // join a chain of nodes that only lead the way to a single child
+            while (node.values.isEmpty() && node.childCount == 1) {
+                node = node.childNodes[0];
+                label.append(node.name);
+            }
+            builder.add(label, node.values, node.childCount);
+            queue.addAll(node.getSortedChildren());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Makes an immutable copy of the trie as it is now in which equal endings of words are shared, which takes a
+     * fraction of the memory of a snapshot for a large dictionary. This trie itself stays writable
+     * @see DawgTrie
+     */
+    public DawgTrie<T> minimize() {
+        DawgTrie.Builder<T> builder = new DawgTrie.Builder<>();
+        // pre-order is the order of the words, and backwards it has every subtree before the node above it
+        List<Node<T>> nodes = new ArrayList<>();
+        WalkStack<T> stack = new WalkStack<>();
+        stack.push(this, 0, 0);
+        while (stack.size > 0) {
+            Node<T> node = stack.pop();
+            nodes.add(node);
+            if (!node.values.isEmpty()) {
+                builder.addWord(node.values);
+            }
+            stack.pushChildren(node, 0, 0);
+        }
+        // the state reached after the first letter of the name of a node
+        Map<Node<T>, Integer> states = new IdentityHashMap<>(nodes.size() * 2);
+        int state = 0;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node<T> node = nodes.get(i);
+            int[] targets = new int[node.childCount];
+            for (int child = 0; child < node.childCount; child++) {
+                targets[child] = states.remove(node.childNodes[child]);
+            }
+            state = builder.state(!node.values.isEmpty(), Arrays.copyOf(node.childKeys, node.childCount), targets);
+            if (node != this) {
+                // the rest of the name is a chain of states with one edge each
+                for (int j = node.name.length() - 1; j > 0; j--) {
+                    state = builder.state(false, new char[]{node.name.charAt(j)}, new int[]{state});
+                }
+                states.put(node, state);
+            }
+        }
+        return builder.build(state);
+    }
+
+    /**
+     * Lazily iterate over the words from (inclusive) up to to (exclusive), in lexicographic order. Only the path of
+     * from is walked to find the first word, so a narrow range in a large trie costs O(depth + results)
+     * @param from Smallest word to return
+     * @param to Word to stop before, or null to continue to the last word
+     * @return Iterator over words and their (read-only) Data items
+     */
+    public Iterator<Map.Entry<String, List<T>>> rangeIterator(String from, String to) {
+        PrefixIterator<T> iterator = new PrefixIterator<>(from, to);
+        Node<T> node = this;
+        int offset = 0;
+        // every word below node starts with the first offset letters of from
+        while (offset < from.length()) {
+            char letter = from.charAt(offset);
+            int index = node.firstIndexOf(letter);
+            Node<T> sameLetter = index < node.childCount && node.childKeys[index] == letter ? node.childNodes[index] : null;
+            // children with a larger first letter only hold larger words, the smallest one ends up on top
+            for (int i = node.childCount - 1; i >= (sameLetter == null ? index : index + 1); i--) {
+                iterator.push(node.childNodes[i], offset);
+            }
+            if (sameLetter == null) {
+                return iterator;
+            }
+            int difference = sameLetter.firstDifference(from, offset);
+            if (difference == sameLetter.name.length()) {
+                node = sameLetter;
+                offset += difference;
+            } else {
+                // from ends within the name or the name is larger at the first difference: all words are larger
+                if (offset + difference == from.length() || sameLetter.name.charAt(difference) > from.charAt(offset + difference)) {
+                    iterator.push(sameLetter, offset);
+                }
+                return iterator;
+            }
+        }
+        iterator.push(node, node == this ? 0 : offset - node.name.length());
+        return iterator;
+    }
+
+    /**
+     * Stream the words from (inclusive) up to to (exclusive), in lexicographic order
+     * @see #rangeIterator(String, String)
+     */
+    public Stream<Map.Entry<String, List<T>>> searchRange(String from, String to) {
+        Spliterator<Map.Entry<String, List<T>>> spliterator = Spliterators.spliteratorUnknownSize(
+                rangeIterator(from, to), Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * @return the smallest word that is equal to or larger than key, or null when there is none
+     */
+    public String ceilingKey(String key) {
+        Iterator<Map.Entry<String, List<T>>> iterator = rangeIterator(key, null);
+        return iterator.hasNext() ? iterator.next().getKey() : null;
+    }
+
+    /**
+     * @return the largest word that is equal to or smaller than key, or null when there is none
+     */
+    public String floorKey(String key) {
+        return floorKey(key, 0, new StringBuilder());
+    }
+
+    /**
+     * @param offset number of letters of key matched by the path down to this node
+     * @param path the word up to this node
+     */
+    private String floorKey(String key, int offset, StringBuilder path) {
+        if (offset == key.length()) {
+            // longer words are larger, so only this node itself can qualify
+            return values.isEmpty() ? null : path.toString();
+        }
+        char letter = key.charAt(offset);
+        int index = firstIndexOf(letter);
+        if (index < childCount && childKeys[index] == letter) {
+            Node<T> child = childNodes[index];
+            int difference = child.firstDifference(key, offset);
+            String floor = null;
+            if (difference == child.name.length()) {
+                path.append(child.name);
+                floor = child.floorKey(key, offset + difference, path);
+                path.setLength(offset);
+            } else if (offset + difference < key.length() && child.name.charAt(difference) < key.charAt(offset + difference)) {
+                floor = child.lastWord(path);
+            }
+            if (floor != null) {
+                return floor;
+            }
+        }
+        for (int i = index - 1; i >= 0; i--) {
+            String last = childNodes[i].lastWord(path);
+            if (last != null) {
+                return last;
+            }
+        }
+        return values.isEmpty() ? null : path.toString();
+    }
+
+    /**
+     * @param path the word up to the parent of this node, left as it was
+     * @return the largest word in the subtree of this node, or null when it holds no words
+     */
+    private String lastWord(StringBuilder path) {
+        if (nrOfValueNodes == 0) {
+            return null;
+        }
+        int length = path.length();
+        Node<T> node = this;
+        path.append(name);
+        boolean descended = true;
+        while (descended) {
+            descended = false;
+            for (int i = node.childCount - 1; i >= 0; i--) {
+                if (node.childNodes[i].nrOfValueNodes > 0) {
+                    node = node.childNodes[i];
+                    path.append(node.name);
+                    descended = true;
+                    break;
+                }
+            }
+        }
+        String word = path.toString();
+        path.setLength(length);
+        return word;
+    }
+
+    /**
+     * The word at a position in lexicographic order, found through the cached counters in O(depth)
+     * @param rank Position of the word, 0 for the smallest
+     * @throws IndexOutOfBoundsException when rank is negative or not smaller than the number of words
+     */
+    public String keyAt(int rank) {
+        if (rank < 0 || rank >= nrOfValueNodes) {
+            throw new IndexOutOfBoundsException("rank " + rank + " of " + nrOfValueNodes + " words");
+        }
+        StringBuilder path = new StringBuilder();
+        Node<T> node = this;
+        while (true) {
+            if (!node.values.isEmpty()) {
+                if (rank == 0) {
+                    return path.toString();
+                }
+                rank--;
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                Node<T> child = node.childNodes[i];
+                if (rank < child.nrOfValueNodes) {
+                    node = child;
+                    path.append(child.name);
+                    break;
+                }
+                rank -= child.nrOfValueNodes;
+            }
+        }
+    }
+
+    /**
+     * @return the number of letters of the name that equal the letters of word from offset, up to the end of either
+     */
+    private int firstDifference(String word, int offset) {
+        int max = Math.min(name.length(), word.length() - offset);
+        int i = 0;
+        while (i < max && name.charAt(i) == word.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Number of words that start with the given prefix, answered from the cached counters in O(length of prefix)
+     */
+    @Override
+    public long countWithPrefix(String prefix) {
+        Node<T> node = getPrefixNode(prefix);
+        return node == null ? 0 : node.nrOfValueNodes;
+    }
+
+    /**
+     * Number of Data items stored under words that start with the given prefix, answered from the cached counters
+     * in O(length of prefix)
+     */
+    @Override
+    public long countValuesWithPrefix(String prefix) {
+        Node<T> node = getPrefixNode(prefix);
+        return node == null ? 0 : node.nrOfValues;
+    }
+
+    /**
+     * Finds the topmost node whose subtree holds exactly the words starting with prefix. The prefix may end
+     * halfway the name of that node
+     * @return the node, or null when no word starts with prefix
+     */
+    private Node<T> getPrefixNode(String prefix) {
+        Node<T> node = this;
+        int offset = 0;
+        while (offset < prefix.length()) {
+            Node<T> child = node.getChildStartingWith(prefix.charAt(offset));
+            if (child == null) {
+                return null;
+            }
+            if (!child.nameMatches(prefix, offset)) {
+                return child.getName().startsWith(prefix.substring(offset)) ? child : null;
+            }
+            node = child;
+            offset += child.getName().length();
+        }
+        return node;
+    }
+
+    /**
+     * Concatenates the names on the path from (but not including) the given ancestor down to this node
+     */
+    private String getWordUpTo(Node<T> ancestor) {
+        Deque<String> names = new ArrayDeque<>();
+        for (Node<T> node = this; node != ancestor; node = node.parent) {
+            names.push(node.getName());
+        }
+        return String.join("", names);
+    }
+
     private Node<T> findOnlyValueNode() {
-        for (Node<T> child : children.values()) {
+        for (int i = 0; i < childCount; i++) {
+            Node<T> child = childNodes[i];
+            if (child.nrOfValueNodes == 0) {
+                continue;
+            }
             if (!child.getValues().isEmpty()) {
                 return child;
             }
@@ -122,35 +784,97 @@ public class Node<T> implements Trie<T> {
 
     @Override
     public String toDOTString() {
-        return "digraph G\n{\n" + "_[label=\"\"]\n" + toDOTString(DOT_ROOT__NODE_NAME) + "}";
+        StringBuilder dot = new StringBuilder();
+        try {
+            writeDOT(dot, "", Integer.MAX_VALUE);
+        } catch (IOException e) {
+            // a StringBuilder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return dot.toString();
+    }
+
+    @Override
+    public void writeDOT(Appendable out) throws IOException {
+        writeDOT(out, "", Integer.MAX_VALUE);
     }
 
     /**
-     * Recursive toDOTString
-     * @param nodeName is used to give each child node a unique name
-     * @return the string representation
+     * Writes the subtree of the words starting with prefix as a graphviz digraph, node by node, so the output never
+     * has to fit in memory. The top node is labeled with the whole path from the root; nodes get short ids in the
+     * order they are written. Nodes at maxDepth whose subtree is cut off show the number of words left out
+     * @param prefix only words starting with prefix are written, "" writes the whole trie
+     * @param maxDepth number of levels below the top node to write
+     * @see #toDOTString()
      */
-    private String toDOTString(String nodeName) {
-        StringBuilder dot = new StringBuilder();
+    public void writeDOT(Appendable out, String prefix, int maxDepth) throws IOException {
+        out.append("digraph G\n{\n");
+        writeDOTNodes(out, prefix, maxDepth, DOT_ROOT__NODE_NAME, "n");
+        out.append("}");
+    }
 
-        getSortedChildren().forEach(child -> {
-            String childNodeName = nodeName + child.getName();
-            dot.append(nodeName).append(" -> ").append(childNodeName).append("\n");
-            // add label to node
-            dot.append(childNodeName).append("[label=\"").append(child.getName());
-            if (child.isLeaf()) {
-                dot.append(child.getValues());
-            }
-            dot.append("\"]\n");
-            dot.append(child.toDOTString(childNodeName));
-        });
-        return dot.toString();
+    /**
+     * Writes the nodes and edges of {@link #writeDOT(Appendable, String, int)} without the digraph around them, so
+     * they can be part of a larger graph
+     * @param topId id of the top node
+     * @param idPrefix put in front of the number of every other node, to keep ids unique within the larger graph
+     */
+    void writeDOTNodes(Appendable out, String prefix, int maxDepth, String topId, String idPrefix) throws IOException {
+        Node<T> top = getPrefixNode(prefix);
+        if (top == null) {
+            return;
+        }
+        out.append(topId).append("[label=\"");
+        appendDOTLabel(out, top == this ? "" : top.getWordUpTo(this), top, 0, maxDepth);
+        out.append("\"]\n");
+        int nextId = 1;
+        WalkStack<T> stack = new WalkStack<>();
+        if (maxDepth > 0) {
+            stack.pushChildren(top, 0, 1);
+        }
+        while (stack.size > 0) {
+            Node<T> node = stack.pop();
+            int parentId = stack.poppedParentId;
+            int depth = stack.poppedDepth;
+            int id = nextId++;
+            if (parentId == 0) {
+                out.append(topId);
+            } else {
+                out.append(idPrefix).append(Integer.toString(parentId));
+            }
+            out.append(" -> ").append(idPrefix).append(Integer.toString(id)).append("\n");
+            out.append(idPrefix).append(Integer.toString(id)).append("[label=\"");
+            appendDOTLabel(out, node.name, node, depth, maxDepth);
+            out.append("\"]\n");
+            if (depth < maxDepth) {
+                stack.pushChildren(node, id, depth + 1);
+            }
+        }
+    }
+
+    private static <T> void appendDOTLabel(Appendable out, String name, Node<T> node, int depth, int maxDepth)
+            throws IOException {
+        StringBuilder label = new StringBuilder(name);
+        if (!node.values.isEmpty()) {
+            label.append(node.values);
+        }
+        if (depth == maxDepth && node.childCount > 0) {
+            label.append(" (+").append(node.nrOfValueNodes - (node.values.isEmpty() ? 0 : 1)).append(")");
+        }
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
     }
 
+    /**
+     * Children are kept sorted, so this is a read-only view rather than a sorted copy
+     */
     private List<Node<T>> getSortedChildren() {
-        return children.values().stream()
-                .sorted((Node<T> c1, Node<T> c2) -> c1.getName().compareTo(c2.getName()))
-                .collect(Collectors.toList());
+        return Collections.unmodifiableList(Arrays.asList(childNodes).subList(0, childCount));
     }
 
     /**
@@ -164,29 +888,115 @@ public class Node<T> implements Trie<T> {
             return;
         }
 
-        Optional<Node<T>> onelyChildOpt = children.values().stream().findFirst();
-        if (onelyChildOpt.isPresent()) {
-            Node<T> onlyChild = onelyChildOpt.get(); // last child
+        Node<T> formerParent = parent;
+        if (childCount > 0) {
+            Node<T> onlyChild = childNodes[0]; // last child
             String newName = name + onlyChild.getName();
-            parent.addNode(newName, onlyChild.getValues());
-            parent.drop(this);
+            formerParent.addNode(newName, onlyChild.getValues());
+            formerParent.drop(this);
+            listener.collapsed();
         }
-        parent.collapse();
+        formerParent.collapse();
     }
 
     private void drop(Node<T> leaf) {
-        children.remove(leaf.getName());
+        char key = leaf.getName().charAt(0);
+        // while a node is being replaced two children can briefly share a first letter, so match on identity
+        for (int i = firstIndexOf(key); i < childCount && childKeys[i] == key; i++) {
+            if (childNodes[i] == leaf) {
+                updateCounts(-leaf.nrOfValueNodes, -leaf.nrOfValues);
+                leaf.parent = null;
+                childCount--;
+                System.arraycopy(childKeys, i + 1, childKeys, i, childCount - i);
+                System.arraycopy(childNodes, i + 1, childNodes, i, childCount - i);
+                childNodes[childCount] = null;
+                return;
+            }
+        }
     }
 
     private Optional<Node<T>> getChildMatchingString(String word) {
-        return Optional.ofNullable(children.get(word));
+        Node<T> child = getChildStartingWith(word.charAt(0));
+        return child != null && child.getName().equals(word) ? Optional.of(child) : Optional.empty();
+    }
+
+    private Node<T> getChildStartingWith(char letter) {
+        int i = firstIndexOf(letter);
+        return i < childCount && childKeys[i] == letter ? childNodes[i] : null;
+    }
+
+    /**
+     * Binary search on the sorted first letters
+     * @return index of the first child whose first letter is not smaller than letter
+     */
+    private int firstIndexOf(char letter) {
+        int low = 0;
+        int high = childCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (childKeys[middle] < letter) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean nameMatches(CharSequence word, int offset) {
+        int length = name.length();
+        if (word.length() - offset < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != word.charAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addChild(Node<T> child) {
+        // like a map keyed on name: a child with the same name is replaced
+        char key = child.getName().charAt(0);
+        int index = firstIndexOf(key);
+        for (int i = index; i < childCount && childKeys[i] == key; i++) {
+            if (childNodes[i].getName().equals(child.getName())) {
+                updateCounts(child.nrOfValueNodes - childNodes[i].nrOfValueNodes, child.nrOfValues - childNodes[i].nrOfValues);
+                childNodes[i].parent = null;
+                childNodes[i] = child;
+                return;
+            }
+        }
+        if (childCount == childKeys.length) {
+            int capacity = Math.max(2, childCount * 2);
+            childKeys = Arrays.copyOf(childKeys, capacity);
+            childNodes = Arrays.copyOf(childNodes, capacity);
+        }
+        System.arraycopy(childKeys, index, childKeys, index + 1, childCount - index);
+        System.arraycopy(childNodes, index, childNodes, index + 1, childCount - index);
+        childKeys[index] = key;
+        childNodes[index] = child;
+        childCount++;
+        updateCounts(child.nrOfValueNodes, child.nrOfValues);
+    }
+
+    /**
+     * Applies a change in the number of value nodes and values in a subtree to this node and all its ancestors
+     */
+    private void updateCounts(int valueNodesDelta, int valuesDelta) {
+        if (valueNodesDelta == 0 && valuesDelta == 0) {
+            return;
+        }
+        for (Node<T> node = this; node != null; node = node.parent) {
+            node.nrOfValueNodes += valueNodesDelta;
+            node.nrOfValues += valuesDelta;
+        }
     }
 
     private Optional<Node<T>> getLeafStartingWithLetter(String firstLetter) {
-        List<Node<T>> sortedChildren = getSortedChildren();
-        return sortedChildren.stream()
-                .filter(child -> child.getName().startsWith(firstLetter) && child.isLeaf())
-                .findFirst();
+        Node<T> child = getChildStartingWith(firstLetter.charAt(0));
+        return child != null && child.isLeaf() ? Optional.of(child) : Optional.empty();
     }
 
     private String tail(String word) {
@@ -200,26 +1010,25 @@ public class Node<T> implements Trie<T> {
     private Node<T> addNode(String name) {
         Node<T> node = new Node<>(name);
         node.setParent(this);
-        children.put(node.getName(), node);
+        node.listener = listener;
+        addChild(node);
         return node;
     }
 
     private Node<T> addNode(String name, List<T> newValues) {
         Node<T> node = new Node<>(name, newValues);
         node.parent = this;
-        children.put(node.getName(), node);
+        node.listener = listener;
+        addChild(node);
         return node;
     }
 
     private boolean isLeaf() {
-        return children.size() == 0;
+        return childCount == 0;
     }
 
     protected int getNrOfValueNodes() {
-        int nrOfValueNodesInChildren = children.values().stream()
-                .mapToInt(Node::getNrOfValueNodes)
-                .sum();
-        return !values.isEmpty() ? nrOfValueNodesInChildren + 1 : nrOfValueNodesInChildren;
+        return nrOfValueNodes;
     }
 
     protected String getName() {
@@ -239,26 +1048,231 @@ public class Node<T> implements Trie<T> {
     }
 
     /**
-     * Recursive toString
+     * Indented representation of the subtree, one node per line, built with an explicit stack so deep tries don't
+     * run out of stack
      * @param level is used for indenting
      * @return the string representation
      */
     public String toString(int level) {
         StringBuilder output = new StringBuilder();
-        for (int i=0;i<level;i++) {
-            output.append("    ");
+        WalkStack<T> stack = new WalkStack<>();
+        stack.push(this, 0, level);
+        while (stack.size > 0) {
+            Node<T> node = stack.pop();
+            int nodeLevel = stack.poppedDepth;
+            if (node == null) {
+                // the subtree of a child is done
+                output.append("\n");
+                continue;
+            }
+            for (int i = 0; i < nodeLevel; i++) {
+                output.append("    ");
+            }
+            output.append(node.name);
+            if (!node.values.isEmpty()) {
+                output.append(node.values);
+            }
+            output.append(":\n");
+            for (int i = node.childCount - 1; i >= 0; i--) {
+                stack.push(null, 0, nodeLevel + 1);
+                stack.push(node.childNodes[i], 0, nodeLevel + 1);
+            }
         }
-        output.append(name);
-        if (!values.isEmpty()) {
-            output.append(values);
+        return output.toString();
+    }
+
+    /**
+     * Depth first, pre-order walk over a subtree that yields the nodes with values. Children are visited in sorted
+     * order, so words come out in lexicographic order
+     */
+    private static class PrefixIterator<T> implements Iterator<Map.Entry<String, List<T>>> {
+
+        private final Deque<Node<T>> stack = new ArrayDeque<>();
+        // length of the word of the parent of each node on the stack, used to cut the path back when popping
+        private final Deque<Integer> parentLengths = new ArrayDeque<>();
+        private final StringBuilder path;
+        // words from this one on are not returned, null to return all words
+        private final String upperBound;
+        private Map.Entry<String, List<T>> next;
+
+        private PrefixIterator(Node<T> start, String pathToStart) {
+            path = new StringBuilder(pathToStart);
+            upperBound = null;
+            push(start, pathToStart.length());
         }
-        output.append(":\n");
 
-        List<Node<T>> sortedChildren = getSortedChildren();
-        for (Node<T> node : sortedChildren) {
-            output.append(node.toString(level + 1));
-            output.append("\n");
+        /**
+         * An iterator without nodes yet; the nodes pushed must all be on the path of pathToNodes or larger
+         */
+        private PrefixIterator(String pathToNodes, String upperBound) {
+            path = new StringBuilder(pathToNodes);
+            this.upperBound = upperBound;
+        }
+
+        private void push(Node<T> node, int parentLength) {
+            stack.push(node);
+            parentLengths.push(parentLength);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !stack.isEmpty()) {
+                Node<T> node = stack.pop();
+                path.setLength(parentLengths.pop());
+                if (node.getName() != null) {
+                    path.append(node.getName());
+                }
+                List<Node<T>> sortedChildren = node.getSortedChildren();
+                for (int i = sortedChildren.size() - 1; i >= 0; i--) {
+                    stack.push(sortedChildren.get(i));
+                    parentLengths.push(path.length());
+                }
+                if (!node.values.isEmpty()) {
+                    String word = path.toString();
+                    if (upperBound != null && word.compareTo(upperBound) >= 0) {
+                        stack.clear();
+                        parentLengths.clear();
+                        return false;
+                    }
+                    next = new AbstractMap.SimpleImmutableEntry<>(word, Collections.unmodifiableList(node.values));
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, List<T>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, List<T>> result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**
+     * Explicit stack for walking a subtree without recursion: nodes with the id of their parent and their depth, in growing arrays
+     */
+    private static final class WalkStack<T> {
+
+        @SuppressWarnings("unchecked")
+        private Node<T>[] nodes = (Node<T>[]) new Node<?>[16];
+        private int[] parentIds = new int[16];
+        private int[] depths = new int[16];
+        private int size;
+        // parent id and depth of the node last popped
+        private int poppedParentId;
+        private int poppedDepth;
+
+        void push(Node<T> node, int parentId, int depth) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                parentIds = Arrays.copyOf(parentIds, size * 2);
+                depths = Arrays.copyOf(depths, size * 2);
+            }
+            nodes[size] = node;
+            parentIds[size] = parentId;
+            depths[size++] = depth;
+        }
+
+        /**
+         * Pushes the children in reverse, so they are popped in sorted order
+         */
+        void pushChildren(Node<T> node, int parentId, int depth) {
+            for (int i = node.childCount - 1; i >= 0; i--) {
+                push(node.childNodes[i], parentId, depth);
+            }
+        }
+
+        Node<T> pop() {
+            Node<T> node = nodes[--size];
+            nodes[size] = null;
+            poppedParentId = parentIds[size];
+            poppedDepth = depths[size];
+            return node;
+        }
+    }
+
+    /**
+     * Builds a trie from sorted words in one pass. Because the words arrive sorted, the nodes on the path of the
+     * previous word are the only ones that can still get children. Those intermediate nodes are kept on a stack; the
+     * previous word itself is held back until the next word shows how much of it the two share
+     */
+    private static class SortedBuilder<T> {
+
+        private final Node<T> root = new Node<>();
+        // root followed by one intermediate node per letter of the path that is still open
+        private final List<Node<T>> stack = new ArrayList<>();
+        private String pendingWord;
+        private List<T> pendingValues;
+
+        private SortedBuilder() {
+            stack.add(root);
+        }
+
+        private void add(String word, T value) {
+            if (word.isEmpty()) {
+                throw new IllegalArgumentException("empty words can't be stored");
+            }
+            if (pendingWord == null) {
+                hold(word, value);
+                return;
+            }
+            int comparison = word.compareTo(pendingWord);
+            if (comparison < 0) {
+                throw new IllegalArgumentException("words are not sorted: " + word + " comes after " + pendingWord);
+            }
+            if (comparison == 0) {
+                pendingValues.add(value);
+                return;
+            }
+
+            int shared = commonPrefixLength(pendingWord, word);
+            int depth = stack.size() - 1;
+            if (shared < depth) {
+                // the pending word is a leaf below the current path, which branches off higher up for the new word
+                attachPending(depth);
+                while (stack.size() > shared + 1) {
+                    stack.remove(stack.size() - 1);
+                }
+            } else {
+                // the letters both words share become intermediate nodes
+                for (int i = depth; i < shared; i++) {
+                    stack.add(top().addNode(pendingWord.substring(i, i + 1)));
+                }
+                if (shared == pendingWord.length()) {
+                    // the pending word is a prefix of the new word, so it ends in the last intermediate node
+                    Node<T> end = top();
+                    end.updateCounts(1, pendingValues.size());
+                    end.values.addAll(pendingValues);
+                } else {
+                    attachPending(shared);
+                }
+            }
+            hold(word, value);
+        }
+
+        private Node<T> build() {
+            if (pendingWord != null) {
+                attachPending(stack.size() - 1);
+                pendingWord = null;
+            }
+            return root;
+        }
+
+        private void hold(String word, T value) {
+            pendingWord = word;
+            pendingValues = new ArrayList<>();
+            pendingValues.add(value);
+        }
+
+        private void attachPending(int depth) {
+            top().addNode(pendingWord.substring(depth), pendingValues);
+        }
+
+        private Node<T> top() {
+            return stack.get(stack.size() - 1);
         }
-        return output.toString();
     }
 }
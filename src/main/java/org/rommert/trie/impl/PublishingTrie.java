@@ -0,0 +1,83 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Trie for read-mostly serving: writes go to a mutable {@link Node}, reads are answered by the last published
+ * {@link FrozenTrie} snapshot. {@link #publish()} freezes the current state and swaps it in atomically, so readers
+ * never lock and never see a half applied change; they see the writes up to the last publish.
+ * <p>
+ * Writers are serialized among themselves. A publish holds the writers up while it copies the trie, readers are
+ * never held up.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class PublishingTrie<D> implements Trie<D> {
+
+    private final Node<D> writable = new Node<>();
+    private final AtomicReference<FrozenTrie<D>> published = new AtomicReference<>(writable.snapshot());
+
+    @Override
+    public void insert(String word, D data) {
+        synchronized (writable) {
+            writable.insert(word, data);
+        }
+    }
+
+    @Override
+    public void delete(String word) {
+        synchronized (writable) {
+            writable.delete(word);
+        }
+    }
+
+    /**
+     * Makes all writes so far visible to readers
+     * @return the new snapshot
+     */
+    public FrozenTrie<D> publish() {
+        synchronized (writable) {
+            FrozenTrie<D> snapshot = writable.snapshot();
+            // set under the lock too, or a slower concurrent publish could swap an older snapshot back in
+            published.set(snapshot);
+            return snapshot;
+        }
+    }
+
+    /**
+     * @return the last published snapshot; it never changes, so a sequence of reads on it is consistent
+     */
+    public FrozenTrie<D> snapshot() {
+        return published.get();
+    }
+
+    @Override
+    public List<D> search(String word) {
+        return published.get().search(word);
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        return published.get().search(word);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        return published.get().prefixIterator(prefix);
+    }
+
+    @Override
+    public long countWithPrefix(String prefix) {
+        return published.get().countWithPrefix(prefix);
+    }
+
+    @Override
+    public String toDOTString() {
+        return published.get().toDOTString();
+    }
+}
@@ -0,0 +1,425 @@
+package org.rommert.trie.impl;
+
+import org.rommert.trie.interfaces.Trie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trie split into shards on the first letters of its words, for ingest that scales with cores. Every shard is a
+ * {@link Node} owned by its own writer thread: insert and delete only put the change on the queue of the shard and
+ * return, and the writer applies the changes of its queue in batches. Callers never contend on a trie, and shards
+ * never contend with each other.
+ * <p>
+ * Changes are applied asynchronously, in the order they were queued for the same word. {@link #flush()} waits until
+ * everything queued before it is applied; a search after a flush sees all changes made before it. A full queue makes
+ * insert wait, so a fast producer can't run out of memory.
+ * <p>
+ * Reads go to the shard of the word and lock it for reading, which only waits for a batch being applied. A prefix at
+ * least as long as the sharding key is answered by one shard; a shorter one, like the empty prefix, merges the words
+ * of all shards in order. Prefix iteration reads every shard a chunk of words at a time, so taking the first few words
+ * copies only a few. Each chunk is read under one read lock; changes applied between chunks may or may not be seen,
+ * but every word comes at most once and in order.
+ *
+ * @param <D> Data type that can be stored in the trie
+ */
+public class ShardedTrie<D> implements Trie<D>, Closeable {
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 1024;
+
+    private final Shard<D>[] shards;
+    private final int keyLength;
+    // held shared while queueing, so close can't slip a stop in front of a change that is being queued
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    // guarded by closeLock
+    private boolean closed;
+
+    /**
+     * Shards on the first letter of words
+     * @param nrOfShards number of shards, and of writer threads
+     */
+    public ShardedTrie(int nrOfShards) {
+        this(nrOfShards, 1);
+    }
+
+    /**
+     * @param nrOfShards number of shards, and of writer threads
+     * @param keyLength number of letters at the start of a word that decide its shard; more letters spread words
+     *                  with a common first letter, but need more prefix queries to merge shards
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedTrie(int nrOfShards, int keyLength) {
+        if (nrOfShards < 1 || keyLength < 1) {
+            throw new IllegalArgumentException("need at least one shard and one letter to shard on");
+        }
+        this.keyLength = keyLength;
+        shards = (Shard<D>[]) new Shard<?>[nrOfShards];
+        for (int i = 0; i < nrOfShards; i++) {
+            shards[i] = new Shard<>("trie shard " + i);
+        }
+    }
+
+    /**
+     * Queues the insert for the shard of the word, waiting only when its queue is full
+     * @throws IllegalStateException when the trie is closed
+     */
+    @Override
+    public void insert(String word, D data) {
+        if (word.isEmpty()) {
+            throw new IllegalArgumentException("empty words can't be stored");
+        }
+        queue(shardOf(word), new Change<>(word, data, false, null));
+    }
+
+    /**
+     * Queues the delete for the shard of the word, waiting only when its queue is full
+     * @throws IllegalStateException when the trie is closed
+     */
+    @Override
+    public void delete(String word) {
+        if (!word.isEmpty()) {
+            queue(shardOf(word), new Change<>(word, null, true, null));
+        }
+    }
+
+    /**
+     * Waits until all changes queued so far are applied
+     * @throws IllegalStateException when a queued change failed, or the trie is closed
+     */
+    public void flush() {
+        closeLock.readLock().lock();
+        try {
+            checkOpen();
+            applyQueued();
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies everything queued and stops the writer threads. Later changes throw {@link IllegalStateException}, reads
+     * keep working. Closing a closed trie does nothing
+     * @throws IllegalStateException when a queued change failed; the writers are stopped anyway
+     */
+    @Override
+    public void close() {
+        // waits for changes being queued, and keeps new ones out until closed is set
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                applyQueued();
+            } finally {
+                for (Shard<D> shard : shards) {
+                    shard.queue(new Change<>(null, null, true, null));
+                }
+            }
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        for (Shard<D> shard : shards) {
+            try {
+                shard.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void queue(Shard<D> shard, Change<D> change) {
+        closeLock.readLock().lock();
+        try {
+            checkOpen();
+            shard.queue(change);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("trie is closed");
+        }
+    }
+
+    /**
+     * Puts a barrier in every queue and waits until all writers have passed it
+     */
+    private void applyQueued() {
+        CountDownLatch applied = new CountDownLatch(shards.length);
+        for (Shard<D> shard : shards) {
+            shard.queue(new Change<>(null, null, false, applied));
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                applied.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard<D> shard : shards) {
+            if (shard.failure != null) {
+                throw new IllegalStateException("a change failed", shard.failure);
+            }
+        }
+    }
+
+    @Override
+    public List<D> search(String word) {
+        return search((CharSequence) word);
+    }
+
+    @Override
+    public List<D> search(CharSequence word) {
+        if (word.length() == 0) {
+            return Collections.emptyList();
+        }
+        Shard<D> shard = shardOf(word);
+        shard.lock.readLock().lock();
+        try {
+            List<D> values = shard.node.search(word);
+            // the writer may add to the list after the lock is released
+            return values.isEmpty() ? values : Collections.unmodifiableList(new ArrayList<>(values));
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix) {
+        if (prefix.length() >= keyLength) {
+            return shardOf(prefix).iterator(prefix);
+        }
+        return new MergingIterator<>(shards, prefix);
+    }
+
+    @Override
+    public long countWithPrefix(String prefix) {
+        if (prefix.length() >= keyLength) {
+            return shardOf(prefix).countWithPrefix(prefix);
+        }
+        long count = 0;
+        for (Shard<D> shard : shards) {
+            count += shard.countWithPrefix(prefix);
+        }
+        return count;
+    }
+
+    @Override
+    public String toDOTString() {
+        StringBuilder dot = new StringBuilder();
+        try {
+            writeDOT(dot);
+        } catch (IOException e) {
+            // a StringBuilder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return dot.toString();
+    }
+
+    /**
+     * Writes one graph with the shards below its root, every shard under the read lock of only that shard
+     */
+    @Override
+    public void writeDOT(Appendable out) throws IOException {
+        out.append("digraph G\n{\n_[label=\"\"]\n");
+        for (int i = 0; i < shards.length; i++) {
+            Shard<D> shard = shards[i];
+            String shardId = "s" + i;
+            out.append("_ -> ").append(shardId).append("\n");
+            shard.lock.readLock().lock();
+            try {
+                shard.node.writeDOTNodes(out, "", Integer.MAX_VALUE, shardId, shardId + "n");
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        out.append("}");
+    }
+
+    private Shard<D> shardOf(CharSequence word) {
+        int hash = 0;
+        for (int i = 0; i < keyLength && i < word.length(); i++) {
+            hash = 31 * hash + word.charAt(i);
+        }
+        // a single letter shards round robin over the alphabet, so neighbouring letters go to different shards
+        return shards[Math.floorMod(keyLength == 1 ? hash : hash ^ (hash >>> 16), shards.length)];
+    }
+
+    /**
+     * Change queued for a writer: an insert, a delete, a flush when applied is set, or a stop when it has neither
+     * a word nor applied but is a delete
+     */
+    private static final class Change<D> {
+        private final String word;
+        private final D value;
+        private final boolean delete;
+        private final CountDownLatch applied;
+
+        private Change(String word, D value, boolean delete, CountDownLatch applied) {
+            this.word = word;
+            this.value = value;
+            this.delete = delete;
+            this.applied = applied;
+        }
+    }
+
+    private static final class Shard<D> {
+
+        private final Node<D> node = new Node<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final BlockingQueue<Change<D>> changes = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final Thread writer;
+        // only used by the writer thread
+        private boolean stopped;
+        private volatile RuntimeException failure;
+
+        private Shard(String name) {
+            writer = new Thread(this::write, name);
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        private void queue(Change<D> change) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    changes.put(change);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Loop of the writer thread: takes what is queued, up to a batch, and applies it under one write lock
+         */
+        private void write() {
+            List<Change<D>> batch = new ArrayList<>(BATCH_SIZE);
+            while (!stopped) {
+                try {
+                    batch.add(changes.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                changes.drainTo(batch, BATCH_SIZE - 1);
+                lock.writeLock().lock();
+                try {
+                    for (Change<D> change : batch) {
+                        apply(change);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                // flushes are released after the lock, so the flushing thread can read right away
+                for (Change<D> change : batch) {
+                    if (change.applied != null) {
+                        change.applied.countDown();
+                    }
+                }
+                batch.clear();
+            }
+        }
+
+        private void apply(Change<D> change) {
+            if (change.word == null) {
+                if (change.applied == null) {
+                    stopped = true;
+                }
+                return;
+            }
+            try {
+                if (change.delete) {
+                    node.delete(change.word);
+                } else {
+                    node.insert(change.word, change.value);
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        /**
+         * Reads the shard a chunk at a time, each under the read lock
+         */
+        private ChunkedIterator<D> iterator(String prefix) {
+            return new ChunkedIterator<>((after, limit) -> {
+                lock.readLock().lock();
+                try {
+                    return node.copyWithPrefix(prefix, after, limit);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            });
+        }
+
+        private long countWithPrefix(String prefix) {
+            lock.readLock().lock();
+            try {
+                return node.countWithPrefix(prefix);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted words of all shards, which are disjoint, into one sorted sequence with a heap on the next
+     * word of every shard
+     */
+    private static final class MergingIterator<D> implements Iterator<Map.Entry<String, List<D>>> {
+
+        private final PriorityQueue<ChunkedIterator<D>> heads =
+                new PriorityQueue<>(Comparator.comparing((ChunkedIterator<D> head) -> head.peek().getKey()));
+
+        private MergingIterator(Shard<D>[] shards, String prefix) {
+            for (Shard<D> shard : shards) {
+                ChunkedIterator<D> head = shard.iterator(prefix);
+                if (head.hasNext()) {
+                    heads.add(head);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<String, List<D>> next() {
+            ChunkedIterator<D> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, List<D>> next = head.next();
+            if (head.hasNext()) {
+                heads.add(head);
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.rommert.trie.impl;
+
+import java.util.Arrays;
+
+/**
+ * Shape and size of a trie at the moment {@link Node#statistics()} was called. Depth is counted in nodes below the
+ * root, so the root has depth 0 and its children depth 1
+ */
+public final class TrieStatistics {
+
+    private long nrOfNodes;
+    private long nrOfValueNodes;
+    private long[] nodesPerDepth = new long[16];
+    private long[] nodesPerFanOut = new long[16];
+    private int maxDepth;
+    private int maxFanOut;
+    private long estimatedBytes;
+
+    TrieStatistics() {
+    }
+
+    void add(int depth, int fanOut, boolean hasValues, long bytes) {
+        nrOfNodes++;
+        if (hasValues) {
+            nrOfValueNodes++;
+        }
+        nodesPerDepth = count(nodesPerDepth, depth);
+        nodesPerFanOut = count(nodesPerFanOut, fanOut);
+        maxDepth = Math.max(maxDepth, depth);
+        maxFanOut = Math.max(maxFanOut, fanOut);
+        estimatedBytes += bytes;
+    }
+
+    private static long[] count(long[] histogram, int index) {
+        if (index >= histogram.length) {
+            histogram = Arrays.copyOf(histogram, Math.max(histogram.length * 2, index + 1));
+        }
+        histogram[index]++;
+        return histogram;
+    }
+
+    public long getNrOfNodes() {
+        return nrOfNodes;
+    }
+
+    public long getNrOfValueNodes() {
+        return nrOfValueNodes;
+    }
+
+    /**
+     * @return at index d the number of nodes at depth d, up to the deepest node
+     */
+    public long[] getNodesPerDepth() {
+        return Arrays.copyOf(nodesPerDepth, maxDepth + 1);
+    }
+
+    /**
+     * @return at index n the number of nodes with n children, up to the largest number of children
+     */
+    public long[] getNodesPerFanOut() {
+        return Arrays.copyOf(nodesPerFanOut, maxFanOut + 1);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return rough number of bytes held by the nodes, not counting the values stored in them
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public String toString() {
+        return "nodes: " + nrOfNodes + ", value nodes: " + nrOfValueNodes + ", estimated bytes: " + estimatedBytes
+                + "\nnodes per depth: " + Arrays.toString(getNodesPerDepth())
+                + "\nnodes per fan-out: " + Arrays.toString(getNodesPerFanOut()) + "\n";
+    }
+}
@@ -0,0 +1,70 @@
+package org.rommert.trie.interfaces;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Word found by a fuzzy search, with its edit distance to the word searched for and its Data items
+ *
+ * @param <D> Data type that is stored in the trie-nodes
+ */
+public final class FuzzyMatch<D> {
+
+    private final String word;
+    private final int distance;
+    private final List<D> values;
+
+    public FuzzyMatch(String word, int distance, List<D> values) {
+        this.word = word;
+        this.distance = distance;
+        this.values = values;
+    }
+
+    /**
+     * @return order of the results of a fuzzy search: closest first, ties in lexicographic order
+     */
+    public static <D> Comparator<FuzzyMatch<D>> byDistance() {
+        return Comparator.<FuzzyMatch<D>>comparingInt(FuzzyMatch::getDistance).thenComparing(FuzzyMatch::getWord);
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    /**
+     * @return number of inserted, deleted and substituted letters that turn the searched word into this word
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return read-only list with the Data items of the word
+     */
+    public List<D> getValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FuzzyMatch)) {
+            return false;
+        }
+        FuzzyMatch<?> match = (FuzzyMatch<?>) o;
+        return distance == match.distance && word.equals(match.word) && values.equals(match.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(word, distance, values);
+    }
+
+    @Override
+    public String toString() {
+        return word + "~" + distance + values;
+    }
+}
@@ -1,6 +1,10 @@
 package org.rommert.trie.interfaces;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Interface with the default methods of the trie
@@ -19,16 +23,183 @@ public interface Trie<D> {
     /**
      * Search for a word in the trie and get all the Data elements that are stored in the particular node
      * @param word Word to search
-     * @return List with Data items
+     * @return Read-only list with Data items, empty when the word is not in the trie
      */
     List<D> search(String word);
 
+    /**
+     * Search for a word given as any character sequence, so that callers holding a StringBuilder or a CharBuffer
+     * don't have to copy it into a String first
+     * @param word Word to search
+     * @return Read-only list with Data items, empty when the word is not in the trie
+     */
+    default List<D> search(CharSequence word) {
+        return search(word.toString());
+    }
+
+    /**
+     * Search for a batch of words at once. Implementations can sort the batch and walk the path that consecutive
+     * words share only once
+     * @param words Words to search, duplicates are searched once
+     * @return Every word of the batch with its read-only list of Data items, empty when the word is not in the trie,
+     * in lexicographic order of the words
+     */
+    default Map<String, List<D>> searchAll(Collection<String> words) {
+        Map<String, List<D>> results = new LinkedHashMap<>();
+        for (String word : new TreeSet<>(words)) {
+            results.put(word, search(word));
+        }
+        return results;
+    }
+
+    /**
+     * Add a batch of words, each with one Data element. Implementations can sort the batch and walk the path that
+     * consecutive words share only once
+     * @param entries Words and the Data element to store with each of them
+     */
+    default void insertAll(Map<String, ? extends D> entries) {
+        entries.forEach(this::insert);
+    }
+
     /**
      * Delete a word (and all its data objects) from the trie
      * @param word Word to delete
      */
     void delete(String word);
 
+    /**
+     * Lazily iterate over all words that start with the given prefix, in lexicographic order. Words are only
+     * assembled as the iterator advances, so a short prefix doesn't build a huge list first
+     * @param prefix Prefix to look for, the empty string iterates the whole trie
+     * @return Iterator over words and their (read-only) Data items
+     */
+    Iterator<Map.Entry<String, List<D>>> prefixIterator(String prefix);
+
+    /**
+     * Stream all words that start with the given prefix, in lexicographic order
+     * @param prefix Prefix to look for
+     * @return Lazy, ordered stream of words and their Data items
+     */
+    default Stream<Map.Entry<String, List<D>>> searchPrefix(String prefix) {
+        Spliterator<Map.Entry<String, List<D>>> spliterator = Spliterators.spliteratorUnknownSize(
+                prefixIterator(prefix), Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Stream all words that start with the given prefix, in lexicographic order
+     * @param prefix Prefix to look for
+     * @return Lazy, ordered stream of words
+     */
+    default Stream<String> keysWithPrefix(String prefix) {
+        return searchPrefix(prefix).map(Map.Entry::getKey);
+    }
+
+    /**
+     * Get the first words, in lexicographic order, that start with the given prefix. Typically used for
+     * autocompletion
+     * @param prefix Prefix to look for
+     * @param limit Maximum number of words to return
+     * @return List with at most limit words
+     */
+    default List<String> keysWithPrefix(String prefix, int limit) {
+        return keysWithPrefix(prefix).limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Stream the Data items of all words that start with the given prefix, in lexicographic order of the words
+     * @param prefix Prefix to look for
+     * @return Lazy stream of Data items
+     */
+    default Stream<D> valuesWithPrefix(String prefix) {
+        return searchPrefix(prefix).flatMap(entry -> entry.getValue().stream());
+    }
+
+    /**
+     * Count the words that start with the given prefix
+     * @param prefix Prefix to look for
+     * @return Number of distinct words
+     */
+    default long countWithPrefix(String prefix) {
+        return searchPrefix(prefix).count();
+    }
+
+    /**
+     * Count the Data items stored under all words that start with the given prefix
+     * @param prefix Prefix to look for
+     * @return Number of Data items
+     */
+    default long countValuesWithPrefix(String prefix) {
+        return valuesWithPrefix(prefix).count();
+    }
+
+    /**
+     * Get the words that start with the given prefix and have the most Data items, for instance the most frequent
+     * words when the Data items are positions in a text
+     * @param prefix Prefix to look for
+     * @param k Maximum number of words to return
+     * @return At most k words with their Data items, most Data items first, ties in lexicographic order
+     */
+    default List<Map.Entry<String, List<D>>> topByValueCount(String prefix, int k) {
+        Comparator<Map.Entry<String, List<D>>> byValueCount = Comparator
+                .<Map.Entry<String, List<D>>>comparingInt(entry -> entry.getValue().size()).reversed()
+                .thenComparing(Map.Entry::getKey);
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        // keep the k best in a heap whose head is the worst of them
+        PriorityQueue<Map.Entry<String, List<D>>> best = new PriorityQueue<>(k, byValueCount.reversed());
+        searchPrefix(prefix).forEach(entry -> {
+            best.add(entry);
+            if (best.size() > k) {
+                best.poll();
+            }
+        });
+        List<Map.Entry<String, List<D>>> result = new ArrayList<>(best);
+        result.sort(byValueCount);
+        return result;
+    }
+
+    /**
+     * Find the words within a number of edits of the given word, counting inserted, deleted and substituted letters
+     * (Levenshtein distance). This default compares the word with every word in the trie; implementations can walk
+     * their tree once instead and skip every subtree that is already too far off
+     * @param word Word to search, typically a misspelling
+     * @param maxEdits Largest distance of the words to return
+     * @return Matching words with their distance and Data items, closest first, ties in lexicographic order
+     */
+    default List<FuzzyMatch<D>> searchFuzzy(String word, int maxEdits) {
+        List<FuzzyMatch<D>> matches = new ArrayList<>();
+        int[] previous = new int[word.length() + 1];
+        int[] current = new int[word.length() + 1];
+        prefixIterator("").forEachRemaining(entry -> {
+            String candidate = entry.getKey();
+            if (Math.abs(candidate.length() - word.length()) > maxEdits) {
+                return;
+            }
+            int[] row = previous;
+            int[] next = current;
+            for (int j = 0; j <= word.length(); j++) {
+                row[j] = j;
+            }
+            for (int i = 0; i < candidate.length(); i++) {
+                next[0] = i + 1;
+                for (int j = 1; j <= word.length(); j++) {
+                    int substitution = row[j - 1] + (candidate.charAt(i) == word.charAt(j - 1) ? 0 : 1);
+                    next[j] = Math.min(substitution, Math.min(row[j], next[j - 1]) + 1);
+                }
+                int[] swap = row;
+                row = next;
+                next = swap;
+            }
+            if (row[word.length()] <= maxEdits) {
+                matches.add(new FuzzyMatch<>(candidate, row[word.length()], entry.getValue()));
+            }
+        });
+        matches.sort(FuzzyMatch.byDistance());
+        return matches;
+    }
+
     /**
      * Converts the Trie structure into a graphviz string, so that it can be visualized using Graphviz
      * See: https://en.wikipedia.org/wiki/DOT_(graph_description_language)
@@ -38,4 +209,13 @@ public interface Trie<D> {
      * @return DOT string representation of the trie
      */
     String toDOTString();
+
+    /**
+     * Writes the graphviz representation to out; implementations that can write it node by node, without holding
+     * it all in memory, override this
+     * @see #toDOTString()
+     */
+    default void writeDOT(Appendable out) throws IOException {
+        out.append(toDOTString());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package org.rommert.trie.interfaces;
+
+/**
+ * Receives measurements from a trie. Every method does nothing by default, so a listener only implements what it
+ * is interested in, and {@link #NONE}, the default of a trie that isn't instrumented, costs no more than a call the
+ * JIT removes.
+ * <p>
+ * Methods may be called from any thread that uses the trie, and are called on the hot path: they should be cheap
+ * and must not call back into the trie
+ */
+public interface TrieListener {
+
+    TrieListener NONE = new TrieListener() {
+    };
+
+    /**
+     * An insert took the given time
+     */
+    default void inserted(long nanos) {
+    }
+
+    /**
+     * A search took the given time
+     */
+    default void searched(long nanos) {
+    }
+
+    /**
+     * A delete took the given time
+     */
+    default void deleted(long nanos) {
+    }
+
+    /**
+     * A lookup stepped through the given number of nodes below the root, found or not
+     */
+    default void visited(int nodes) {
+    }
+
+    /**
+     * An insert split a node name in two, adding an intermediate node
+     */
+    default void split() {
+    }
+
+    /**
+     * A delete joined a node with its only child
+     */
+    default void collapsed() {
+    }
+}
@@ -0,0 +1,44 @@
+package org.rommert.trie.interfaces;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the Data elements of a trie to and from bytes, so a trie can be stored in a file
+ *
+ * @param <D> Data type that is stored in the trie-nodes
+ */
+public interface ValueCodec<D> {
+
+    /**
+     * Write one Data element
+     * @param value Data element to write
+     * @param output Output to write to
+     */
+    void write(D value, DataOutput output) throws IOException;
+
+    /**
+     * Read one Data element at the position of the buffer, leaving the position right after it
+     * @param buffer Buffer to read from
+     * @return the Data element
+     */
+    D read(ByteBuffer buffer);
+
+    /**
+     * @return codec that stores Integers, such as word positions, as 4 bytes
+     */
+    static ValueCodec<Integer> integers() {
+        return new ValueCodec<Integer>() {
+            @Override
+            public void write(Integer value, DataOutput output) throws IOException {
+                output.writeInt(value);
+            }
+
+            @Override
+            public Integer read(ByteBuffer buffer) {
+                return buffer.getInt();
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+package org.rommert.trie;
+
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class IndexerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Indexer indexer;
+
+    @Before
+    public void setup() {
+        indexer = new Indexer();
+    }
+
+    @Test
+    public void testIndexKeepsEarlierDocuments() {
+        int first = indexer.index("De vos springt over de hond.");
+        int second = indexer.index("De hond\nslaapt, de vos niet!");
+
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(Arrays.asList(new Posting(0, 1), new Posting(1, 4)), indexer.search("vos"));
+        assertEquals(Arrays.asList(new Posting(0, 0), new Posting(0, 4), new Posting(1, 0), new Posting(1, 3)),
+                indexer.search("de"));
+        assertEquals(Arrays.asList(new Posting(1, 2)), indexer.search("slaapt"));
+        assertEquals(12, indexer.getNrOfWords());
+    }
+
+    @Test
+    public void testSearchContaining() {
+        indexer.index("De raad vergadert in het raadhuis.");
+        indexer.index("De gemeenteraad besluit, het paard niet.");
+        assertEquals(Arrays.asList(new Posting(0, 1), new Posting(0, 5), new Posting(1, 1)),
+                indexer.searchContaining("raad"));
+        assertEquals(Arrays.asList(new Posting(0, 4), new Posting(1, 3)), indexer.searchContaining("het"));
+        assertEquals(Collections.emptyList(), indexer.searchContaining("paarden"));
+        // a new document replaces the suffix index
+        indexer.index("Raadsels");
+        assertEquals(4, indexer.searchContaining("raad").size());
+    }
+
+    @Test
+    public void testIndexStripsNonLetters() {
+        indexer.index("hij is niet bijster onder de indruk: hij is te laat");
+        assertEquals(Arrays.asList(new Posting(0, 6)), indexer.search("indruk"));
+        // queries lose their punctuation like the indexed words
+        assertEquals(Arrays.asList(new Posting(0, 6)), indexer.search("indruk:"));
+        assertEquals(Collections.emptyList(), indexer.search("indrukken"));
+    }
+
+    @Test
+    public void testIndexKeepsAccentsAndOtherScripts() {
+        indexer.index("Geëerd publiek, het Café is open. Добро пожаловать! 𝒜lfa");
+        assertEquals(Arrays.asList(new Posting(0, 0)), indexer.search("geëerd"));
+        assertEquals(Arrays.asList(new Posting(0, 3)), indexer.search("café"));
+        assertEquals(Arrays.asList(new Posting(0, 7)), indexer.search("пожаловать"));
+        assertEquals(Arrays.asList(new Posting(0, 8)), indexer.search("𝒜lfa"));
+        assertEquals(Collections.emptyList(), indexer.search("geerd"));
+    }
+
+    @Test
+    public void testIndexNormalizesCombiningAccents() {
+        indexer.index("cafe\u0301 en caf\u00e9");
+        assertEquals(Arrays.asList(new Posting(0, 0), new Posting(0, 2)), indexer.search("caf\u00e9"));
+    }
+
+    @Test
+    public void testSearchNormalizesQueries() {
+        indexer.index("De hond van het Caf\u00e9 slaapt in de gemeenteraad");
+        assertEquals(Arrays.asList(new Posting(0, 1)), indexer.search("Hond"));
+        assertEquals(Arrays.asList(new Posting(0, 4)), indexer.search("cafe\u0301"));
+        assertEquals(Arrays.asList(new Posting(0, 4)), indexer.search("CAFE\u0301"));
+        assertEquals(Arrays.asList(new Posting(0, 8)), indexer.searchContaining("Raad"));
+        assertEquals(Arrays.asList(new Posting(0, 4)), indexer.searchContaining("fe\u0301"));
+    }
+
+    @Test
+    public void testIndexInputStream() throws Exception {
+        byte[] text = "een luie hond\neen snelle vos".getBytes(StandardCharsets.UTF_8);
+        indexer.index(new ByteArrayInputStream(text), "stream");
+        assertEquals(Arrays.asList(new Posting(0, 0), new Posting(0, 3)), indexer.search("een"));
+        assertEquals("stream", indexer.getDocumentName(0));
+    }
+
+    @Test
+    public void testIndexFilesInParallelMatchesSequential() throws Exception {
+        File directory = folder.newFolder("docs");
+        List<String> texts = new ArrayList<>();
+        Random random = new Random(5);
+        String[] vocabulary = {"vos", "hond", "de", "een", "luie", "springt", "over", "verhaal", "weinig"};
+        for (int i = 0; i < 12; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 500; j++) {
+                text.append(vocabulary[random.nextInt(vocabulary.length)]).append(j % 20 == 0 ? ".\n" : " ");
+            }
+            texts.add(text.toString());
+            Files.write(new File(directory, String.format("doc%02d.txt", i)).toPath(),
+                    text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<Integer> docIds = indexer.indexFiles(Collections.singletonList(directory.toPath()), 4);
+
+        Indexer sequential = new Indexer();
+        texts.forEach(sequential::index);
+        assertEquals(12, docIds.size());
+        for (String word : vocabulary) {
+            assertEquals(sequential.search(word), indexer.search(word));
+        }
+        assertEquals(sequential.getNrOfWords(), indexer.getNrOfWords());
+    }
+}
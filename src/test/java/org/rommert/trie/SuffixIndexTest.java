@@ -0,0 +1,54 @@
+package org.rommert.trie;
+
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class SuffixIndexTest {
+
+    @Test
+    public void testWordsContaining() {
+        SuffixIndex index = SuffixIndex.of(Arrays.asList("raadhuis", "gemeenteraad", "raad", "paard", "ananas"));
+        assertEquals(Arrays.asList("gemeenteraad", "raad", "raadhuis"), index.wordsContaining("raad"));
+        assertEquals(Arrays.asList("gemeenteraad", "paard", "raad", "raadhuis"), index.wordsContaining("aa"));
+        // contains ana twice, found once
+        assertEquals(Arrays.asList("ananas"), index.wordsContaining("ana"));
+        assertEquals(Arrays.asList("paard"), index.wordsContaining("paard"));
+        assertEquals(Collections.emptyList(), index.wordsContaining("paarden"));
+        assertEquals(Collections.emptyList(), index.wordsContaining("x"));
+        assertEquals(5, index.wordsContaining("").size());
+    }
+
+    @Test
+    public void testSurrogatePairs() {
+        SuffixIndex index = SuffixIndex.of(Arrays.asList("𝒜lfa", "b𝒜"));
+        assertEquals(Arrays.asList("b𝒜", "𝒜lfa"), index.wordsContaining("𝒜"));
+        assertEquals(Arrays.asList("𝒜lfa"), index.wordsContaining("lf"));
+    }
+
+    @Test
+    public void testSameAsScan() {
+        Random random = new Random(22);
+        Set<String> vocabulary = new HashSet<>();
+        while (vocabulary.size() < 2000) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(4)));
+            }
+            vocabulary.add(word.toString());
+        }
+        SuffixIndex index = SuffixIndex.of(vocabulary);
+        for (String fragment : Arrays.asList("a", "ab", "bca", "dddd", "abcdab", "cccccccccc")) {
+            List<String> expected = vocabulary.stream().filter(word -> word.contains(fragment)).sorted()
+                    .collect(Collectors.toList());
+            assertEquals(expected, index.wordsContaining(fragment));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class AdaptiveTrieTest {
+
+    private AdaptiveTrie<Integer> root;
+
+    @Before
+    public void setup() {
+        root = new AdaptiveTrie<>();
+    }
+
+    @Test
+    public void testSearch() {
+        root.insert("vos", 14);
+        root.insert("voordelig", 23);
+        root.insert("vos", 15);
+        root.insert("voor", 2);
+        assertEquals(Arrays.asList(14, 15), root.search("vos"));
+        assertEquals(Arrays.asList(23), root.search("voordelig"));
+        assertEquals(Arrays.asList(2), root.search("voor"));
+        assertEquals(Collections.emptyList(), root.search("vo"));
+        assertEquals(Collections.emptyList(), root.search("vosje"));
+        assertEquals(Collections.emptyList(), root.search("vas"));
+        assertEquals(3, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testNodesGrowAndShrinkWithFanOut() {
+        // a child of "x" for every one byte UTF-8 character, which takes it past 48 children
+        root.insert("x", -1);
+        List<String> words = new ArrayList<>();
+        for (int c = 1; c < 128; c++) {
+            words.add("x" + (char) c);
+        }
+        for (int i = 0; i < words.size(); i++) {
+            root.insert(words.get(i), i);
+            assertEquals(expectedType(i + 1), typeOfX());
+        }
+        for (int i = 0; i < words.size(); i++) {
+            assertEquals(Arrays.asList(i), root.search(words.get(i)));
+        }
+        assertEquals(words, root.keysWithPrefix("x").skip(1).collect(Collectors.toList()));
+
+        for (int i = words.size() - 1; i >= 0; i--) {
+            root.delete(words.get(i));
+            assertEquals(Collections.emptyList(), root.search(words.get(i)));
+        }
+        assertEquals("Leaf", typeOfX());
+        assertEquals(Arrays.asList(-1), root.search("x"));
+    }
+
+    @Test
+    public void testDelete() {
+        root.insert("stof", 123);
+        root.insert("stoffig", 45);
+        root.insert("storing", 3);
+        root.delete("stof");
+        assertEquals(Collections.emptyList(), root.search("stof"));
+        assertEquals(Arrays.asList(45), root.search("stoffig"));
+        root.delete("stoffig");
+        root.delete("storing");
+        root.delete("onbekend");
+        assertEquals(0, root.getNrOfValueNodes());
+        assertEquals(Collections.emptyList(), root.keysWithPrefix("", 10));
+    }
+
+    @Test
+    public void testBehavesLikeNode() {
+        Node<Integer> node = new Node<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(3);
+            for (int j = 0; j < length; j++) {
+                // a wide first level and narrow deeper levels
+                word.append((char) (j == 0 ? 'A' + random.nextInt(60) : 'a' + random.nextInt(6)));
+            }
+            if (random.nextInt(3) == 0) {
+                node.delete(word.toString());
+                root.delete(word.toString());
+            } else {
+                node.insert(word.toString(), i);
+                root.insert(word.toString(), i);
+            }
+        }
+        List<Map.Entry<String, List<Integer>>> expected = new ArrayList<>();
+        node.prefixIterator("").forEachRemaining(expected::add);
+        List<Map.Entry<String, List<Integer>>> actual = new ArrayList<>();
+        root.prefixIterator("").forEachRemaining(actual::add);
+        assertEquals(expected, actual);
+        assertEquals(node.countWithPrefix("Ba"), root.countWithPrefix("Ba"));
+    }
+
+    private String typeOfX() {
+        String line = root.toString().split("\n")[1];
+        return line.substring(line.indexOf('(') + 1, line.indexOf(')'));
+    }
+
+    private static String expectedType(int children) {
+        return children <= 4 ? "Node4" : children <= 16 ? "Node16" : children <= 48 ? "Node48" : "Node256";
+    }
+}
@@ -0,0 +1,353 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class ArrayTrieTest {
+
+    private ArrayTrie<Integer> root;
+
+    @Before
+    public void setup() {
+        root = new ArrayTrie<>();
+    }
+
+    @Test
+    public void testNode() {
+        ArrayTrie<Integer> root = new ArrayTrie<>();
+        root.insert("vos", 13);
+        System.out.println(root.toString());
+        assertEquals(1, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testMultipleWords() {
+        ArrayTrie<Integer> root = new ArrayTrie<>();
+        root.insert("vos", 13);
+        root.insert("beer", 14);
+        root.insert("voordeur", 21);
+        root.insert("voornamelijk", 23);
+
+        System.out.println(root.toString());
+        assertEquals(4, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testMultipleOccurrencesOfSameWord() {
+        root.insert("voornamelijk", 23);
+        root.insert("voornamelijk", 24);
+        root.insert("voornemens", 31);
+        root.insert("voornamelijk", 53);
+        root.insert("voornamelijk", 274);
+        root.insert("voornemens", 3);
+
+        System.out.println(root.toString());
+        assertEquals(2, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testSearch() {
+        root.insert("vos", 14);
+        root.insert("vos", 23);
+        List<Integer> expected = Arrays.asList(14, 23);
+        List<Integer> actual = root.search("vos");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSearchInComplexTree() {
+        root.insert("vos", 14);
+        root.insert("voordelig", 23);
+        root.insert("beer", 5);
+        root.insert("beroepsmilitair", 442);
+        List<Integer> expected = Arrays.asList(23);
+        List<Integer> actual = root.search("voordelig");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testContainedWord() {
+        root.insert("los", 14);
+        root.insert("losbol", 23);
+        List<Integer> expected = Arrays.asList(14);
+        List<Integer> actual = root.search("los");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testNonWordSubstring() {
+        root.insert("los", 14);
+        root.insert("losbol", 23);
+        List<Integer> expected = Collections.emptyList();
+        List<Integer> actual = root.search("losb");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSearchNonExistingWord() {
+        root.insert("vos", 14);
+        List<Integer> expected = Collections.emptyList();
+        List<Integer> actual = root.search("beer");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testDeleteWord() {
+        root.insert("voornamelijk", 23);
+        root.insert("vos", 7);
+        root.insert("voornemens", 3);
+
+        System.out.println(root.toString());
+        assertEquals(3, root.getNrOfValueNodes());
+
+        root.delete("voornemens");
+
+        System.out.println(root.toString());
+        assertEquals(2, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testFirstWordContainsSecondWord() {
+        root.insert("luie", 14);
+        root.insert("lui", 23);
+
+        System.out.println(root.toString());
+        assertEquals(2, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testSecondWordContainsFirstWord() {
+        root.insert("de", 14);
+        root.insert("deze", 23);
+
+        System.out.println(root.toString());
+        assertEquals(2, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testMultiBranchedTree() {
+        root.insert("werk", 14);
+        root.insert("werken", 5); // branch on e
+        root.insert("werkelijk", 23); // branch on l
+        root.insert("werkeloos", 183);
+
+        System.out.println(root.toString());
+    }
+
+    @Test
+    public void testDeleteFromRoot() {
+        root.insert("weinig", 123);
+        root.delete("weinig");
+        assertEquals(0, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testDeleteNonExistingLeaf() {
+        root.insert("weinig", 123);
+        root.delete("veel");
+        assertEquals(1, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testDeleteLongerWordFirst() {
+        root.insert("stof", 123);
+        root.insert("stoffig", 45);
+        root.delete("stoffig");
+        System.out.println(root.toString());
+        assertEquals(1, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testDeleteShorterWordFirst() {
+        root.insert("stof", 123);
+        root.insert("stoffig", 45);
+        root.delete("stof");
+        System.out.println(root.toString());
+        assertEquals(1, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testDeleteFromBranchingRoot() {
+        root.insert("stof", 123);
+        root.insert("stoffig", 45);
+        root.insert("storing", 3);
+        root.delete("stoffig");
+        System.out.println(root.toString());
+        assertEquals(2, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testDeleteShortestWordFromBranchingRoot() {
+        root.insert("stof", 123);
+        root.insert("stoffig", 45);
+        root.insert("storing", 3);
+        root.delete("stof");
+        System.out.println(root.toString());
+        assertEquals(2, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testDeleteFromChain() {
+        root.insert("la", 14);
+        root.insert("lak", 3); // branch on e
+        root.insert("laks", 73); // branch on l
+        root.insert("lakschade", 23);
+
+        System.out.println(root.toString());
+
+        root.delete("laks");
+        System.out.println(root.toString());
+    }
+
+    @Test
+    public void testRemoveWordThatLeavesASingleNodeWithMultipleChildren() {
+        root.insert("verder", 123);
+        root.insert("verhaal", 45);
+        root.insert("verdraaid", 3);
+        root.delete("verhaal");
+        System.out.println(root.toString());
+    }
+
+    @Test
+    public void testAddAndRemoveFullStory() {
+        String story = "" +
+                "Dit is een heel lang verhaal over een vos die vrolijk over een luie hond springt. Wat de hond niet weet is dat deze " +
+                "dat deze vos snel en bruin is, maar dat de hond zelf lui is. De hond trekt zich er weinig van aan zoals een " +
+                "luie hond betaamd. Maar die vos voelt zich een partijtje goed joh, die komt thuis en zegt tegen zn vrouw dat hij " +
+                "echt iets heel stoers heeft gedaan. De vrouw is niet bijster onder de indruk: hij is te laat voor het eten " +
+                "en behalve een goed verhaal heeft hij verder verdraaid weinig meegebracht. Einde.";
+
+        String standardized = story.replaceAll("[^a-zA-Z ]", "").toLowerCase();
+        String[] words = standardized.split(" ");
+        int position = 0;
+        Set<String> allDistinctWords = new HashSet<>();
+
+        for (String word : words) {
+            root.insert(word, position);
+            allDistinctWords.add(word);
+            position++;
+        }
+
+        //expect a full tree. Expect the nr of leafs to reflect the number of unique words
+        System.out.println(root.toString());
+        assertEquals(allDistinctWords.size(), root.getNrOfValueNodes());
+
+        // delete all words, at random
+        List<String> shuffeled = new ArrayList<>(allDistinctWords);
+        Collections.shuffle(shuffeled);
+        shuffeled.forEach(root::delete);
+
+        // expect an empty root node
+        System.out.println(root.toString());
+        assertEquals(0, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testToDOTString() {
+        String story = "" +
+                "Dit is een heel lang verhaal over een vos die vrolijk over een luie hond springt. Wat de hond niet weet is dat deze " +
+                "dat deze vos snel en bruin is, maar dat de hond zelf lui is. De hond trekt zich er weinig van aan zoals een " +
+                "luie hond betaamd. Maar die vos voelt zich een partijtje goed joh, die komt thuis en zegt tegen zn vrouw dat hij " +
+                "echt iets heel stoers heeft gedaan. De vrouw is niet bijster onder de indruk: hij is te laat voor het eten " +
+                "en behalve een goed verhaal heeft hij verder verdraaid weinig meegebracht. Einde.";
+
+        String standardized = story.replaceAll("[^a-zA-Z ]", "").toLowerCase();
+        String[] words = standardized.split(" ");
+        int position = 0;
+
+        for (String word : words) {
+            root.insert(word, position);
+            position++;
+        }
+
+        System.out.println(root.toDOTString());
+    }
+
+    @Test
+    public void testBehavesLikeNode() {
+        Node<Integer> node = new Node<>();
+        Random random = new Random(42);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(4)));
+            }
+            words.add(word.toString());
+            root.insert(word.toString(), i);
+            node.insert(word.toString(), i);
+        }
+        for (int i = 0; i < 3000; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            if (random.nextBoolean()) {
+                root.delete(word);
+                node.delete(word);
+            }
+            assertEquals(node.search(word), root.search(word));
+            assertEquals(node.getNrOfValueNodes(), root.getNrOfValueNodes());
+        }
+        for (String word : words) {
+            assertEquals(node.search(word), root.search(word));
+        }
+        List<Map.Entry<String, List<Integer>>> expected = new ArrayList<>();
+        node.prefixIterator("").forEachRemaining(expected::add);
+        List<Map.Entry<String, List<Integer>>> actual = new ArrayList<>();
+        root.prefixIterator("").forEachRemaining(actual::add);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testKeysWithPrefix() {
+        root.insert("voornamelijk", 23);
+        root.insert("vos", 7);
+        root.insert("voornemens", 3);
+        root.insert("voor", 12);
+        root.insert("beer", 5);
+
+        assertEquals(Arrays.asList("voor", "voornamelijk", "voornemens", "vos"), root.keysWithPrefix("v", 10));
+        assertEquals(Arrays.asList("voornamelijk", "voornemens"), root.keysWithPrefix("voorn", 10));
+        assertEquals(Arrays.asList("voornamelijk"), root.keysWithPrefix("voorna", 10));
+        assertEquals(Arrays.asList("voor", "voornamelijk"), root.keysWithPrefix("vo", 2));
+        assertEquals(Collections.emptyList(), root.keysWithPrefix("voorx", 10));
+        assertEquals(Collections.emptyList(), root.keysWithPrefix("z", 10));
+        assertEquals(5, root.countWithPrefix(""));
+        assertEquals(4, root.countWithPrefix("vo"));
+    }
+
+    @Test
+    public void testValuesWithPrefix() {
+        root.insert("los", 14);
+        root.insert("losbol", 23);
+        root.insert("los", 31);
+        root.insert("lak", 2);
+
+        List<Integer> actual = root.valuesWithPrefix("lo").collect(Collectors.toList());
+        assertEquals(Arrays.asList(14, 31, 23), actual);
+    }
+
+    @Test
+    public void testTopByValueCount() {
+        root.insert("hond", 1);
+        root.insert("hond", 2);
+        root.insert("hond", 3);
+        root.insert("hij", 4);
+        root.insert("hij", 5);
+        root.insert("heel", 6);
+        root.insert("het", 7);
+
+        List<Map.Entry<String, List<Integer>>> top = root.topByValueCount("h", 3);
+        assertEquals(3, top.size());
+        assertEquals("hond", top.get(0).getKey());
+        assertEquals("hij", top.get(1).getKey());
+        assertEquals("heel", top.get(2).getKey());
+    }
+}
@@ -0,0 +1,114 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class ByteTrieTest {
+
+    private ByteTrie<Integer> root;
+
+    @Before
+    public void setup() {
+        root = new ByteTrie<>();
+    }
+
+    @Test
+    public void testSearch() {
+        root.insert("vos", 14);
+        root.insert("voordelig", 23);
+        root.insert("vos", 15);
+        root.insert("voor", 2);
+        assertEquals(Arrays.asList(14, 15), root.search("vos"));
+        assertEquals(Arrays.asList(23), root.search("voordelig"));
+        assertEquals(Arrays.asList(2), root.search("voor"));
+        assertEquals(Collections.emptyList(), root.search("vo"));
+        assertEquals(Collections.emptyList(), root.search("vosje"));
+        assertEquals(3, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testUnicodeWords() {
+        root.insert("geëerd", 1);
+        root.insert("geen", 2);
+        root.insert("café", 3);
+        root.insert("cafe", 4);
+        root.insert("🦊", 5);
+        root.insert("🦋", 6);
+        assertEquals(Arrays.asList(1), root.search("geëerd"));
+        assertEquals(Arrays.asList(3), root.search("café"));
+        assertEquals(Arrays.asList(4), root.search("cafe"));
+        assertEquals(Arrays.asList(5), root.search("🦊"));
+        assertEquals(Collections.emptyList(), root.search("\uD83E"));
+        assertEquals(Arrays.asList("cafe", "café"), root.keysWithPrefix("caf").collect(Collectors.toList()));
+        assertEquals(Arrays.asList("geëerd"), root.keysWithPrefix("geë").collect(Collectors.toList()));
+        assertEquals(Arrays.asList("cafe", "café", "geen", "geëerd", "🦊", "🦋"),
+                root.keysWithPrefix("").collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSearchEncodedBuffer() {
+        root.insert("geëerd", 1);
+        byte[] packet = "GET geëerd HTTP".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(packet, 4, "geëerd".getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(Arrays.asList(1), root.search(buffer));
+        assertEquals(4, buffer.position());
+        assertEquals(Arrays.asList(1), root.search(buffer.slice()));
+        assertEquals(Arrays.asList(1), root.search("geëerd".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testDelete() {
+        root.insert("stof", 123);
+        root.insert("stoffig", 45);
+        root.insert("storing", 3);
+        root.delete("stof");
+        assertEquals(Collections.emptyList(), root.search("stof"));
+        assertEquals(Arrays.asList(45), root.search("stoffig"));
+        root.delete("stoffig");
+        root.delete("storing");
+        root.delete("onbekend");
+        assertEquals(0, root.getNrOfValueNodes());
+        assertEquals(":\n", root.toString());
+    }
+
+    @Test
+    public void testBehavesLikeNode() {
+        Node<Integer> node = new Node<>();
+        Random random = new Random(12);
+        String alphabet = "aeëéz🦊";
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                int letter = random.nextInt(5);
+                word.append(letter == 4 ? alphabet.substring(4) : alphabet.substring(letter, letter + 1));
+            }
+            if (random.nextInt(5) == 0) {
+                node.delete(word.toString());
+                root.delete(word.toString());
+            } else {
+                node.insert(word.toString(), i);
+                root.insert(word.toString(), i);
+            }
+        }
+        List<Map.Entry<String, List<Integer>>> expected = new ArrayList<>();
+        node.prefixIterator("").forEachRemaining(expected::add);
+        List<Map.Entry<String, List<Integer>>> actual = new ArrayList<>();
+        root.prefixIterator("").forEachRemaining(actual::add);
+        assertEquals(expected.size(), actual.size());
+        for (Map.Entry<String, List<Integer>> entry : expected) {
+            assertEquals(entry.getValue(), root.search(entry.getKey()));
+        }
+        assertEquals(node.countWithPrefix("e"), root.countWithPrefix("e"));
+    }
+}
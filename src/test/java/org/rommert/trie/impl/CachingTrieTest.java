@@ -0,0 +1,150 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class CachingTrieTest {
+
+    private Node<Integer> root;
+    private CachingTrie<Integer> cache;
+
+    @Before
+    public void setup() {
+        root = new Node<>();
+        cache = new CachingTrie<>(root, 100);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        root.insert("vos", 1);
+        assertEquals(Arrays.asList(1), cache.search("vos"));
+        assertEquals(Arrays.asList(1), cache.search("vos"));
+        assertEquals(Collections.emptyList(), cache.search("hond"));
+        assertEquals(Collections.emptyList(), cache.search(new StringBuilder("hond")));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCachedValuesAreReadOnly() {
+        cache.insert("vos", 1);
+        cache.search("vos");
+        cache.search("vos").add(2);
+    }
+
+    @Test
+    public void testChangeInvalidatesOnlyThatWord() {
+        cache.insert("vos", 1);
+        cache.insert("hond", 2);
+        cache.search("vos");
+        cache.search("hond");
+        cache.search("kat");
+        cache.insert("vos", 3);
+        cache.insert("kat", 4);
+        assertEquals(Arrays.asList(1, 3), cache.search("vos"));
+        assertEquals(Arrays.asList(4), cache.search("kat"));
+        assertEquals(Arrays.asList(2), cache.search("hond"));
+        assertEquals(1, cache.getHits());
+
+        cache.delete("vos");
+        assertEquals(Collections.emptyList(), cache.search("vos"));
+        Map<String, Integer> batch = new HashMap<>();
+        batch.put("kat", 5);
+        cache.insertAll(batch);
+        assertEquals(Arrays.asList(4, 5), cache.search("kat"));
+        assertEquals(Arrays.asList(2), cache.search("hond"));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testChangeDuringSearchOnlyKeepsThatWordOut() {
+        // writes a word while the cache searches another one, the way a concurrent writer could
+        Node<Integer> writing = new Node<Integer>() {
+            @Override
+            public List<Integer> search(String word) {
+                if (word.equals("hond")) {
+                    cache.insert("vos", 2);
+                } else if (word.equals("kat")) {
+                    cache.insert("kat", 3);
+                }
+                return super.search(word);
+            }
+        };
+        cache = new CachingTrie<>(writing, 100);
+        writing.insert("hond", 1);
+
+        assertEquals(Arrays.asList(1), cache.search("hond"));
+        assertEquals(Arrays.asList(1), cache.search("hond"));
+        assertEquals(1, cache.getHits());
+
+        // a result found while its own word changed may be stale, so it is not cached
+        cache.search("kat");
+        cache.search("kat");
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        for (int i = 0; i < 1000; i++) {
+            root.insert("w" + i, i);
+            cache.search("w" + i);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictions());
+    }
+
+    /**
+     * Words looked up once, more than fit in the cache, go past between lookups of a few popular words. An LRU cache
+     * would lose the popular words every time
+     */
+    @Test
+    public void testScanDoesNotFlushPopularWords() {
+        for (int i = 0; i < 10000; i++) {
+            root.insert("w" + i, i);
+        }
+        List<String> popular = Arrays.asList("w1", "w2", "w3", "w4", "w5");
+        for (int round = 0; round < 20; round++) {
+            for (String word : popular) {
+                cache.search(word);
+            }
+        }
+        long hitsBefore = cache.getHits();
+        for (int i = 100; i < 10000; i++) {
+            cache.search("w" + i);
+            if (i % 100 == 0) {
+                for (String word : popular) {
+                    cache.search(word);
+                }
+            }
+        }
+        // every lookup of a popular word during the scan is a hit
+        assertEquals(99 * popular.size(), cache.getHits() - hitsBefore);
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void testSketchCountsAndAges() {
+        CachingTrie.FrequencySketch sketch = new CachingTrie.FrequencySketch(64);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("vos");
+        }
+        sketch.increment("hond");
+        assertEquals(15, sketch.frequency("vos"));
+        assertTrue(sketch.frequency("hond") >= 1);
+        for (int i = 0; i < 640; i++) {
+            sketch.increment("x" + i);
+        }
+        // halved at least once after 10 times capacity increments
+        assertTrue(sketch.frequency("vos") <= 7);
+    }
+}
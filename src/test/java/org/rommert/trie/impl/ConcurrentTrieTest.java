@@ -0,0 +1,220 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class ConcurrentTrieTest {
+
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int OPERATIONS_PER_WRITER = 20000;
+
+    private ConcurrentTrie<Integer> root;
+
+    @Before
+    public void setup() {
+        root = new ConcurrentTrie<>();
+    }
+
+    @Test
+    public void testSearch() {
+        root.insert("vos", 14);
+        root.insert("voordelig", 23);
+        root.insert("vos", 15);
+        root.insert("beer", 5);
+        assertEquals(Arrays.asList(14, 15), root.search("vos"));
+        assertEquals(Arrays.asList(23), root.search("voordelig"));
+        assertEquals(Collections.emptyList(), root.search("voor"));
+        assertEquals(Collections.emptyList(), root.search("vosje"));
+    }
+
+    @Test
+    public void testContainedWords() {
+        root.insert("de", 14);
+        root.insert("deze", 23);
+        root.insert("d", 1);
+        assertEquals(Arrays.asList(1), root.search("d"));
+        assertEquals(Arrays.asList(14), root.search("de"));
+        assertEquals(Arrays.asList(23), root.search("deze"));
+    }
+
+    @Test
+    public void testDelete() {
+        root.insert("stof", 123);
+        root.insert("stoffig", 45);
+        root.insert("storing", 3);
+        root.delete("stof");
+        assertEquals(Collections.emptyList(), root.search("stof"));
+        assertEquals(Arrays.asList(45), root.search("stoffig"));
+        root.delete("stoffig");
+        root.delete("storing");
+        assertEquals(0, root.countWithPrefix(""));
+    }
+
+    @Test
+    public void testKeysWithPrefix() {
+        root.insert("voornamelijk", 23);
+        root.insert("vos", 7);
+        root.insert("voornemens", 3);
+        root.insert("voor", 12);
+        root.insert("beer", 5);
+
+        assertEquals(Arrays.asList("beer", "voor", "voornamelijk", "voornemens", "vos"), root.keysWithPrefix("", 10));
+        assertEquals(Arrays.asList("voornamelijk", "voornemens"), root.keysWithPrefix("voorn", 10));
+        assertEquals(Arrays.asList("voornamelijk"), root.keysWithPrefix("voorna", 10));
+        assertEquals(4, root.countWithPrefix("v"));
+        assertEquals(1, root.countWithPrefix("voorna"));
+    }
+
+    /**
+     * Every writer owns its own words, but the words of all writers share first letters and prefixes so writers
+     * race on the same slots. Afterwards the trie must hold exactly what the reference map holds
+     */
+    @Test
+    public void testValueListsAreSnapshots() {
+        root.insert("vos", 1);
+        root.insert("vos", 2);
+        List<Integer> before = root.search("vos");
+        for (int i = 3; i <= 100; i++) {
+            root.insert("vos", i);
+        }
+        // an older version appended to copies, and leaves the newer one alone
+        root.delete("vos");
+        root.insert("vos", 0);
+        assertEquals(Arrays.asList(1, 2), before);
+        assertEquals(Arrays.asList(0), root.search("vos"));
+        try {
+            before.add(3);
+            assertTrue("value lists should be read-only", false);
+        } catch (UnsupportedOperationException expected) {
+            // read-only
+        }
+    }
+
+    /**
+     * All writers append to the same words, so they race for the same value lists
+     */
+    @Test
+    public void testConcurrentAppendsToOneWord() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            int first = writer * 1000;
+            writers.add(executor.submit(() -> {
+                for (int i = first; i < first + 1000; i++) {
+                    root.insert("vos", i);
+                    root.insert("", i);
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+        for (String word : Arrays.asList("vos", "")) {
+            List<Integer> values = new ArrayList<>(root.search(word));
+            Collections.sort(values);
+            assertEquals(WRITERS * 1000, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(Integer.valueOf(i), values.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersMatchReference() throws Exception {
+        ConcurrentSkipListMap<String, List<Integer>> reference = new ConcurrentSkipListMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            int id = writer;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(id);
+                for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                    String word = randomWord(random) + id;
+                    if (random.nextInt(3) == 0) {
+                        root.delete(word);
+                        reference.remove(word);
+                    } else {
+                        root.insert(word, i);
+                        reference.computeIfAbsent(word, w -> new ArrayList<>()).add(i);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<Map.Entry<String, List<Integer>>> actual = new ArrayList<>();
+        root.prefixIterator("").forEachRemaining(actual::add);
+        assertEquals(new ArrayList<>(reference.entrySet()), actual);
+        assertEquals(reference.size(), root.countWithPrefix(""));
+    }
+
+    /**
+     * Readers keep looking up words that are never deleted while writers split and collapse the nodes around them.
+     * A reader that sees a half split node or a lost update would miss one of these words
+     */
+    @Test
+    public void testReadersNeverSeeHalfSplitNodes() throws Exception {
+        List<String> stable = Arrays.asList("a", "ab", "abc", "abcd", "b", "ba", "bab", "ca", "cab");
+        for (String word : stable) {
+            root.insert(word, word.length());
+        }
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        for (int writer = 0; writer < WRITERS; writer++) {
+            int id = writer;
+            executor.submit(() -> {
+                Random random = new Random(id);
+                for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                    String word = randomWord(random) + "!";
+                    if (random.nextBoolean()) {
+                        root.insert(word, i);
+                    } else {
+                        root.delete(word);
+                    }
+                }
+                writersDone.countDown();
+            });
+        }
+        for (int reader = 0; reader < READERS; reader++) {
+            executor.submit(() -> {
+                while (writersDone.getCount() > 0) {
+                    for (String word : stable) {
+                        List<Integer> values = root.search(word);
+                        if (!values.equals(Collections.singletonList(word.length()))) {
+                            failure.compareAndSet(null, word + " -> " + values);
+                        }
+                    }
+                }
+            });
+        }
+        writersDone.await();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(null, failure.get());
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(3)));
+        }
+        return word.toString();
+    }
+}
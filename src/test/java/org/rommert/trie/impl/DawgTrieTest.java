@@ -0,0 +1,145 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class DawgTrieTest {
+
+    private Node<Integer> root;
+
+    @Before
+    public void setup() {
+        root = new Node<>();
+    }
+
+    @Test
+    public void testSearch() {
+        root.insert("vos", 14);
+        root.insert("voordelig", 23);
+        root.insert("vos", 15);
+        root.insert("voor", 2);
+        DawgTrie<Integer> dawg = root.minimize();
+        assertEquals(Arrays.asList(14, 15), dawg.search("vos"));
+        assertEquals(Arrays.asList(23), dawg.search(new StringBuilder("voordelig")));
+        assertEquals(Arrays.asList(2), dawg.search("voor"));
+        assertEquals(Collections.emptyList(), dawg.search("vo"));
+        assertEquals(Collections.emptyList(), dawg.search("vosje"));
+        assertEquals(Collections.emptyList(), dawg.search("beer"));
+        assertEquals(Collections.emptyList(), dawg.search(""));
+        assertEquals(3, dawg.size());
+    }
+
+    @Test
+    public void testEqualEndingsAreShared() {
+        root.insert("schoonheid", 1);
+        root.insert("vrijheid", 2);
+        root.insert("waarheid", 3);
+        DawgTrie<Integer> dawg = root.minimize();
+        // the start, a state after every letter of "schoon", "vrij" and "waar" but one shared state before "heid",
+        // and one path of "heid" for all three words
+        assertEquals(1 + 6 + 4 + 4 - 2 + 4, dawg.getNrOfStates());
+        assertEquals(Arrays.asList(1), dawg.search("schoonheid"));
+        assertEquals(Arrays.asList(2), dawg.search("vrijheid"));
+        assertEquals(Arrays.asList(3), dawg.search("waarheid"));
+        assertEquals(Collections.emptyList(), dawg.search("vrijhei"));
+    }
+
+    @Test
+    public void testRankIsPositionInOrder() {
+        List<String> words = Arrays.asList("vos", "voor", "voordelig", "hond", "honden", "a");
+        for (String word : words) {
+            root.insert(word, word.length());
+        }
+        DawgTrie<Integer> dawg = root.minimize();
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i, dawg.rank(sorted.get(i)));
+        }
+        assertEquals(-1, dawg.rank("hon"));
+        assertEquals(-1, dawg.rank("zebra"));
+    }
+
+    @Test
+    public void testPrefixQueries() {
+        root.insert("vos", 1);
+        root.insert("voshol", 2);
+        root.insert("voshol", 3);
+        root.insert("vogel", 4);
+        root.insert("hond", 5);
+        DawgTrie<Integer> dawg = root.minimize();
+        List<String> words = new ArrayList<>();
+        dawg.prefixIterator("vo").forEachRemaining(entry -> words.add(entry.getKey() + entry.getValue()));
+        assertEquals(Arrays.asList("vogel[4]", "vos[1]", "voshol[2, 3]"), words);
+        assertEquals(3, dawg.countWithPrefix("vo"));
+        assertEquals(4, dawg.countValuesWithPrefix("vo"));
+        assertEquals(Arrays.asList(1, 2, 3), dawg.valuesWithPrefix("vos").collect(Collectors.toList()));
+        assertEquals(4, dawg.countWithPrefix(""));
+        assertEquals(0, dawg.countWithPrefix("x"));
+        assertEquals(0, dawg.countValuesWithPrefix("x"));
+        assertEquals("voshol", dawg.prefixIterator("vosh").next().getKey());
+        assertEquals(Collections.emptyList(), dawg.keysWithPrefix("kat", 10));
+    }
+
+    @Test
+    public void testSameAsNode() {
+        Random random = new Random(42);
+        String[] endings = {"heid", "lijk", "ing", "en", "tje", ""};
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int j = 1 + random.nextInt(6); j > 0; j--) {
+                word.append((char) ('a' + random.nextInt(6)));
+            }
+            word.append(endings[random.nextInt(endings.length)]);
+            root.insert(word.toString(), i);
+        }
+        DawgTrie<Integer> dawg = root.minimize();
+        List<Map.Entry<String, List<Integer>>> expected = new ArrayList<>();
+        root.prefixIterator("").forEachRemaining(expected::add);
+        List<Map.Entry<String, List<Integer>>> actual = new ArrayList<>();
+        dawg.prefixIterator("").forEachRemaining(actual::add);
+        assertEquals(expected, actual);
+        for (String prefix : Arrays.asList("a", "ab", "cde", "fheid")) {
+            assertEquals(root.countWithPrefix(prefix), dawg.countWithPrefix(prefix));
+            assertEquals(root.valuesWithPrefix(prefix).collect(Collectors.toList()),
+                    dawg.valuesWithPrefix(prefix).collect(Collectors.toList()));
+        }
+        assertTrue(dawg.getNrOfStates() < root.snapshot().getNrOfNodes());
+    }
+
+    @Test
+    public void testEmptyTrie() {
+        DawgTrie<Integer> dawg = root.minimize();
+        assertEquals(0, dawg.size());
+        assertEquals(Collections.emptyList(), dawg.search("vos"));
+        assertTrue(!dawg.prefixIterator("").hasNext());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        root.minimize().insert("vos", 1);
+    }
+
+    @Test
+    public void testToDOTString() {
+        root.insert("ab", 1);
+        root.insert("b", 2);
+        // "b" and the "b" of "ab" end in the same state
+        assertEquals("digraph G\n{\n_[label=\"\"]\n" +
+                "s0[label=\"*\"]\n" +
+                "s1[label=\"\"]\n" +
+                "s1 -> s0[label=\"b\"]\n" +
+                "_ -> s1[label=\"a\"]\n" +
+                "_ -> s0[label=\"b\"]\n" +
+                "}", root.minimize().toDOTString());
+    }
+}
@@ -0,0 +1,261 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rommert.trie.interfaces.ValueCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * A crash is simulated by abandoning a trie without closing it and opening the directory again, sometimes after
+ * damaging the files the way a crash at that point would
+ */
+@SuppressWarnings("SpellCheckingInspection")
+public class DurableTrieTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = folder.newFolder("trie").toPath();
+    }
+
+    @Test
+    public void testChangesSurviveCrash() throws IOException {
+        DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers());
+        trie.insert("vos", 1);
+        trie.insert("voor", 2);
+        trie.insert("vos", 3);
+        trie.insert("hond", 4);
+        trie.delete("voor");
+        trie.crash();
+
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(Arrays.asList(1, 3), reopened.search("vos"));
+            assertEquals(Collections.emptyList(), reopened.search("voor"));
+            assertEquals(Arrays.asList(4), reopened.search("hond"));
+            reopened.insert("kat", 5);
+        }
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(Arrays.asList("hond", "kat", "vos"), reopened.keysWithPrefix("", 10));
+        }
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws IOException {
+        DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers());
+        trie.insert("vos", 1);
+        trie.insert("hond", 2);
+        trie.crash();
+        // the process died halfway writing a record
+        Path log = onlyFile("wal-");
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3}));
+        }
+
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(size, Files.size(log));
+            assertEquals(Arrays.asList("hond", "vos"), reopened.keysWithPrefix("", 10));
+            reopened.insert("kat", 3);
+        }
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(Arrays.asList(3), reopened.search("kat"));
+        }
+    }
+
+    @Test
+    public void testCorruptLastRecordIsCutOff() throws IOException {
+        DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers());
+        trie.insert("vos", 1);
+        trie.insert("hond", 2);
+        trie.crash();
+        // a sector of the last record never made it to disk
+        Path log = onlyFile("wal-");
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[bytes.length - 3] ^= 0x55;
+        Files.write(log, bytes);
+
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(Arrays.asList("vos"), reopened.keysWithPrefix("", 10));
+        }
+    }
+
+    @Test
+    public void testCheckpointReplacesLog() throws IOException {
+        try (DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers())) {
+            trie.insert("vos", 1);
+            trie.insert("voor", 2);
+            trie.checkpoint();
+            trie.insert("hond", 3);
+            trie.delete("vos");
+            trie.checkpoint();
+            trie.insert("kat", 4);
+        }
+        // the first log file is covered by the second checkpoint, which replaced the first
+        assertEquals(Arrays.asList("checkpoint-4.trie", "wal-3.log", "wal-5.log"), fileNames());
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(Arrays.asList("hond", "kat", "voor"), reopened.keysWithPrefix("", 10));
+            assertEquals(Arrays.asList(2), reopened.search("voor"));
+        }
+    }
+
+    @Test
+    public void testCrashBeforeLogIsDeleted() throws IOException {
+        DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers());
+        trie.insert("vos", 1);
+        trie.insert("voor", 2);
+        trie.checkpoint();
+        trie.crash();
+        // the log still holds the changes in the checkpoint, they must not be applied twice
+        assertEquals(Arrays.asList("checkpoint-2.trie", "wal-1.log"), fileNames());
+
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(Arrays.asList(1), reopened.search("vos"));
+            assertEquals(Arrays.asList(2), reopened.search("voor"));
+            reopened.insert("vos", 3);
+        }
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(Arrays.asList(1, 3), reopened.search("vos"));
+        }
+    }
+
+    @Test
+    public void testCrashWhileWritingCheckpoint() throws IOException {
+        DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers());
+        trie.insert("vos", 1);
+        trie.checkpoint();
+        trie.insert("hond", 2);
+        trie.crash();
+        // a checkpoint only gets its name when it's complete, a half written one is left behind
+        Files.write(directory.resolve("checkpoint.tmp"), new byte[]{1, 2, 3});
+
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(Arrays.asList("hond", "vos"), reopened.keysWithPrefix("", 10));
+        }
+        assertFalse(Files.exists(directory.resolve("checkpoint.tmp")));
+    }
+
+    @Test
+    public void testConcurrentWritersShareSyncs() throws Exception {
+        DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int writer = 0; writer < 8; writer++) {
+            int first = writer * 100;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = first; i < first + 100; i++) {
+                    trie.insert("w" + i, i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+        // writers that wait for a sync share the next one, one sync per change would be 800
+        assertTrue("syncs: " + trie.getNrOfSyncs(), trie.getNrOfSyncs() < 800);
+        trie.crash();
+
+        try (DurableTrie<Integer> reopened = DurableTrie.open(directory, ValueCodec.integers())) {
+            assertEquals(800, reopened.countWithPrefix("w"));
+            for (int i = 0; i < 800; i++) {
+                assertEquals(Arrays.asList(i), reopened.search("w" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testPeriodicCheckpoint() throws Exception {
+        try (DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers(), Duration.ofMillis(20))) {
+            trie.insert("vos", 1);
+            for (int i = 0; i < 500 && !fileNames().contains("checkpoint-1.trie"); i++) {
+                Thread.sleep(10);
+            }
+        }
+        assertTrue(fileNames().contains("checkpoint-1.trie"));
+    }
+
+    @Test
+    public void testFailedLogRefusesChanges() throws IOException {
+        DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers());
+        trie.insert("vos", 1);
+        trie.checkpoint();
+        // the next change starts the log file that is in the way
+        Files.createDirectory(directory.resolve("wal-2.log"));
+        try {
+            trie.insert("hond", 2);
+            fail("the log could not be written");
+        } catch (UncheckedIOException expected) {
+            // the trie has failed
+        }
+        List<String> words = trie.keysWithPrefix("", 10);
+        try {
+            trie.insert("kat", 3);
+            fail("the trie accepted a change after the log failed");
+        } catch (UncheckedIOException expected) {
+            // refused before it was applied
+        }
+        try {
+            trie.delete("vos");
+            fail("the trie accepted a change after the log failed");
+        } catch (UncheckedIOException expected) {
+            // refused before it was applied
+        }
+        assertEquals(words, trie.keysWithPrefix("", 10));
+        assertEquals(Collections.emptyList(), trie.search("kat"));
+        assertEquals(Arrays.asList(1), trie.search("vos"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws IOException {
+        DurableTrie<Integer> trie = DurableTrie.open(directory, ValueCodec.integers());
+        trie.close();
+        trie.insert("vos", 1);
+    }
+
+    private Path onlyFile(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> matching = files.filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .collect(Collectors.toList());
+            assertEquals(1, matching.size());
+            return matching.get(0);
+        }
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class FrozenTrieTest {
+
+    private Node<Integer> root;
+
+    @Before
+    public void setup() {
+        root = new Node<>();
+    }
+
+    @Test
+    public void testSearch() {
+        root.insert("vos", 14);
+        root.insert("voordelig", 23);
+        root.insert("vos", 15);
+        root.insert("voor", 2);
+        FrozenTrie<Integer> frozen = root.snapshot();
+        assertEquals(Arrays.asList(14, 15), frozen.search("vos"));
+        assertEquals(Arrays.asList(23), frozen.search("voordelig"));
+        assertEquals(Arrays.asList(2), frozen.search("voor"));
+        assertEquals(Collections.emptyList(), frozen.search("vo"));
+        assertEquals(Collections.emptyList(), frozen.search("vosje"));
+        assertEquals(Collections.emptyList(), frozen.search("beer"));
+        assertEquals(3, frozen.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testSnapshotJoinsChains() {
+        root.insert("voornamelijk", 1);
+        root.insert("voornemens", 2);
+        // in the Node trie v, o, o, r and n are separate nodes
+        FrozenTrie<Integer> frozen = root.snapshot();
+        assertEquals(4, frozen.getNrOfNodes());
+        assertEquals(":\n    voorn:\n        amelijk[1]:\n\n        emens[2]:\n\n\n", frozen.toString());
+    }
+
+    @Test
+    public void testSnapshotDoesNotSeeLaterWrites() {
+        root.insert("vos", 1);
+        FrozenTrie<Integer> frozen = root.snapshot();
+        root.insert("vos", 2);
+        root.insert("hond", 3);
+        root.delete("vos");
+        assertEquals(Arrays.asList(1), frozen.search("vos"));
+        assertEquals(Collections.emptyList(), frozen.search("hond"));
+        assertEquals(Arrays.asList(3), root.snapshot().search("hond"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        root.snapshot().insert("vos", 1);
+    }
+
+    @Test
+    public void testBehavesLikeNode() {
+        Random random = new Random(14);
+        for (int i = 0; i < 5000; i++) {
+            String word = Integer.toString(random.nextInt(2000), 5);
+            if (random.nextInt(5) == 0) {
+                root.delete(word);
+            } else {
+                root.insert(word, i);
+            }
+        }
+        FrozenTrie<Integer> frozen = root.snapshot();
+        for (String prefix : Arrays.asList("", "1", "23", "340", "4444", "5")) {
+            List<Map.Entry<String, List<Integer>>> expected = new ArrayList<>();
+            root.prefixIterator(prefix).forEachRemaining(expected::add);
+            List<Map.Entry<String, List<Integer>>> actual = new ArrayList<>();
+            frozen.prefixIterator(prefix).forEachRemaining(actual::add);
+            assertEquals(expected, actual);
+            assertEquals(root.countWithPrefix(prefix), frozen.countWithPrefix(prefix));
+            assertEquals(root.valuesWithPrefix(prefix).collect(Collectors.toList()),
+                    frozen.valuesWithPrefix(prefix).collect(Collectors.toList()));
+        }
+        root.prefixIterator("").forEachRemaining(entry ->
+                assertEquals(entry.getValue(), frozen.search(entry.getKey())));
+    }
+
+    /**
+     * A writer always inserts words in pairs before publishing, so every published snapshot has as many words
+     * starting with a as with b. A reader that saw a torn snapshot would find a difference
+     */
+    @Test
+    public void testPublishedSnapshotsAreConsistent() throws Exception {
+        PublishingTrie<Integer> trie = new PublishingTrie<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch writerDone = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        executor.submit(() -> {
+            for (int i = 0; i < 2000; i++) {
+                trie.insert("a" + i, i);
+                trie.insert("b" + i, i);
+                if (i % 10 == 0) {
+                    trie.publish();
+                }
+            }
+            trie.publish();
+            writerDone.countDown();
+        });
+        for (int reader = 0; reader < 2; reader++) {
+            executor.submit(() -> {
+                while (writerDone.getCount() > 0) {
+                    FrozenTrie<Integer> snapshot = trie.snapshot();
+                    long a = snapshot.countWithPrefix("a");
+                    long b = snapshot.countWithPrefix("b");
+                    if (a != b) {
+                        failure.compareAndSet(null, a + " != " + b);
+                    }
+                }
+            });
+        }
+        writerDone.await();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(null, failure.get());
+        assertEquals(2000, trie.countWithPrefix("a"));
+        assertEquals(Arrays.asList(1999), trie.search("b1999"));
+    }
+
+    /**
+     * Writers only insert and publishers publish all the time, so the published number of words can only go up. A
+     * publish that swapped in its snapshot after a later one would make it go down
+     */
+    @Test
+    public void testConcurrentPublishesNeverGoBack() throws Exception {
+        PublishingTrie<Integer> trie = new PublishingTrie<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch writersDone = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        for (int writer = 0; writer < 2; writer++) {
+            String letter = writer == 0 ? "a" : "b";
+            executor.submit(() -> {
+                for (int i = 0; i < 3000; i++) {
+                    trie.insert(letter + i, i);
+                }
+                writersDone.countDown();
+            });
+        }
+        for (int publisher = 0; publisher < 2; publisher++) {
+            executor.submit(() -> {
+                while (writersDone.getCount() > 0) {
+                    trie.publish();
+                }
+            });
+        }
+        executor.submit(() -> {
+            long last = 0;
+            while (writersDone.getCount() > 0) {
+                long count = trie.countWithPrefix("");
+                if (count < last) {
+                    failure.compareAndSet(null, count + " < " + last);
+                }
+                last = count;
+            }
+        });
+        writersDone.await();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(null, failure.get());
+        trie.publish();
+        assertEquals(6000, trie.countWithPrefix(""));
+    }
+}
@@ -0,0 +1,104 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+import org.rommert.trie.interfaces.TrieListener;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class InstrumentedTrieTest {
+
+    private Node<Integer> root;
+    private MetricsListener metrics;
+    private InstrumentedTrie<Integer> trie;
+
+    @Before
+    public void setup() {
+        root = new Node<>();
+        metrics = new MetricsListener();
+        trie = new InstrumentedTrie<>(root, metrics);
+    }
+
+    @Test
+    public void testCountsOperations() {
+        trie.insert("vos", 1);
+        trie.insert("voor", 2);
+        trie.insert("hond", 3);
+        assertEquals(Arrays.asList(1), trie.search("vos"));
+        assertEquals(Collections.emptyList(), trie.search("kat"));
+        trie.delete("hond");
+        assertEquals(3, metrics.getInsertNanos().getCount());
+        assertEquals(2, metrics.getSearchNanos().getCount());
+        assertEquals(1, metrics.getDeleteNanos().getCount());
+        assertTrue(metrics.getSearchNanos().getPercentile(100) > 0);
+    }
+
+    @Test
+    public void testNodesVisitedSplitsAndCollapses() {
+        trie.insert("vos", 1);
+        // vos is split twice, into v, o and the leaves s and or
+        trie.insert("voor", 2);
+        assertEquals(2, metrics.getSplits());
+        // 3 nodes, 1 and 0, which go in the buckets 2..3, 1 and 0
+        trie.search("voor");
+        trie.search("vis");
+        trie.search("kat");
+        assertArrayEquals(new long[]{1, 1, 1, 0}, Arrays.copyOf(metrics.getNodesVisited().getBuckets(), 4));
+        // o joins with or, then v with oor
+        trie.delete("vos");
+        assertEquals(2, metrics.getCollapses());
+        assertEquals(Arrays.asList(2), trie.search("voor"));
+    }
+
+    @Test
+    public void testListenerReachesNodesAddedLater() {
+        Node<Integer> node = new Node<>();
+        node.insert("vos", 1);
+        node.insert("voor", 2);
+        node.setListener(metrics);
+        node.insert("vogel", 3);
+        // splits gel twice, adding g and e
+        node.insert("vogels", 4);
+        node.insert("vogelaar", 5);
+        assertEquals(2, metrics.getSplits());
+        node.setListener(TrieListener.NONE);
+        node.insert("voortaan", 6);
+        assertEquals(2, metrics.getSplits());
+    }
+
+    @Test
+    public void testStatistics() {
+        root.insert("vos", 1);
+        root.insert("voor", 2);
+        root.insert("hond", 3);
+        TrieStatistics statistics = root.statistics();
+        // root, hond, v, o, or, s
+        assertEquals(6, statistics.getNrOfNodes());
+        assertEquals(3, statistics.getNrOfValueNodes());
+        assertArrayEquals(new long[]{1, 2, 1, 2}, statistics.getNodesPerDepth());
+        assertArrayEquals(new long[]{3, 1, 2}, statistics.getNodesPerFanOut());
+        assertTrue(statistics.getEstimatedBytes() > 6 * 48);
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        // 50 falls in the bucket 32..63
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(127, histogram.getPercentile(100));
+        assertEquals(0, new Histogram().getPercentile(99));
+    }
+}
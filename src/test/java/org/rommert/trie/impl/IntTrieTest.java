@@ -0,0 +1,102 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class IntTrieTest {
+
+    private IntTrie root;
+
+    @Before
+    public void setup() {
+        root = new IntTrie();
+    }
+
+    @Test
+    public void testSearch() {
+        root.insert("vos", 14);
+        root.insert("voordelig", 23);
+        root.insert("vos", 15);
+        root.insert("voor", 2);
+        assertArrayEquals(new int[]{14, 15}, root.search("vos").toArray());
+        assertArrayEquals(new int[]{23}, root.search("voordelig").toArray());
+        assertArrayEquals(new int[]{2}, root.search("voor").toArray());
+        assertEquals(0, root.search("vo").count());
+        assertEquals(0, root.search("vosje").count());
+        assertEquals(2, root.count("vos"));
+        assertFalse(root.positions("beer").hasNext());
+    }
+
+    @Test
+    public void testDelete() {
+        root.insert("stof", 123);
+        root.insert("stoffig", 45);
+        root.delete("stof");
+        root.insert("storing", 3);
+        assertEquals(0, root.count("stof"));
+        assertArrayEquals(new int[]{45}, root.search("stoffig").toArray());
+        assertArrayEquals(new int[]{3}, root.search("storing").toArray());
+        assertEquals(2, root.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testFreezeKeepsPositions() {
+        int[] positions = {0, 1, 127, 128, 16384, 16383, 5, Integer.MAX_VALUE, Integer.MIN_VALUE, -1};
+        for (int position : positions) {
+            root.insert("vos", position);
+        }
+        root.insert("hond", 7);
+        root.freeze();
+        assertArrayEquals(positions, root.search("vos").toArray());
+        assertArrayEquals(new int[]{7}, root.search("hond").toArray());
+
+        root.insert("hond", 9);
+        root.insert("beer", 1);
+        assertArrayEquals(new int[]{7, 9}, root.search("hond").toArray());
+        assertArrayEquals(positions, root.search("vos").toArray());
+        assertEquals(Arrays.asList("beer", "hond", "vos"), root.keysWithPrefix("").collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCompressAscendingPositions() {
+        int[] positions = {1000, 1010, 1100, 1101, 2000};
+        byte[] compressed = IntTrie.compress(positions, positions.length);
+        assertEquals(2 + 1 + 2 + 1 + 2, compressed.length);
+        assertArrayEquals(positions, Arrays.copyOf(IntTrie.decompress(compressed, positions.length), positions.length));
+    }
+
+    @Test
+    public void testBehavesLikeNode() {
+        Node<Integer> node = new Node<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 5000; i++) {
+            String word = Integer.toString(random.nextInt(500), 4);
+            if (random.nextInt(5) == 0) {
+                node.delete(word);
+                root.delete(word);
+            } else {
+                node.insert(word, i);
+                root.insert(word, i);
+            }
+            if (i % 1000 == 0) {
+                root.freeze();
+            }
+        }
+        List<String> words = new ArrayList<>();
+        node.prefixIterator("").forEachRemaining(entry -> {
+            words.add(entry.getKey());
+            assertEquals(entry.getValue(), root.search(entry.getKey()).boxed().collect(Collectors.toList()));
+        });
+        assertEquals(words, root.keysWithPrefix("").collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,128 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rommert.trie.interfaces.ValueCodec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class MappedTrieTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Node<Integer> root;
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        root = new Node<>();
+        file = folder.newFile("trie.bin").toPath();
+    }
+
+    @Test
+    public void testSearchAfterWrite() throws IOException {
+        String story = "" +
+                "Dit is een heel lang verhaal over een vos die vrolijk over een luie hond springt. Wat de hond niet weet is dat deze " +
+                "dat deze vos snel en bruin is, maar dat de hond zelf lui is. De hond trekt zich er weinig van aan zoals een " +
+                "luie hond betaamd. Maar die vos voelt zich een partijtje goed joh, die komt thuis en zegt tegen zn vrouw dat hij " +
+                "echt iets heel stoers heeft gedaan. De vrouw is niet bijster onder de indruk: hij is te laat voor het eten " +
+                "en behalve een goed verhaal heeft hij verder verdraaid weinig meegebracht. Einde.";
+        String[] words = story.replaceAll("[^a-zA-Z ]", "").toLowerCase().split(" ");
+        for (int position = 0; position < words.length; position++) {
+            root.insert(words[position], position);
+        }
+
+        MappedTrie.write(root, ValueCodec.integers(), file);
+        try (MappedTrie<Integer> mapped = MappedTrie.open(file, ValueCodec.integers())) {
+            for (String word : words) {
+                assertEquals(root.search(word), mapped.search(word));
+            }
+            assertEquals(Collections.emptyList(), mapped.search("vo"));
+            assertEquals(Collections.emptyList(), mapped.search("vossen"));
+            assertEquals(root.keysWithPrefix("", 1000), mapped.keysWithPrefix("", 1000));
+            assertEquals(root.keysWithPrefix("ve", 1000), mapped.keysWithPrefix("ve", 1000));
+            assertEquals(root.keysWithPrefix("verh", 1000), mapped.keysWithPrefix("verh", 1000));
+            assertEquals(root.countWithPrefix("h"), mapped.countWithPrefix("h"));
+            assertEquals(root.countWithPrefix("verd"), mapped.countWithPrefix("verd"));
+        }
+    }
+
+    @Test
+    public void testContainedWordsAndEmptyWord() throws IOException {
+        ConcurrentTrie<Integer> trie = new ConcurrentTrie<>();
+        trie.insert("", 0);
+        trie.insert("de", 14);
+        trie.insert("deze", 23);
+        trie.insert("d", 1);
+        trie.insert("dak", 2);
+
+        MappedTrie.write(trie, ValueCodec.integers(), file);
+        try (MappedTrie<Integer> mapped = MappedTrie.open(file, ValueCodec.integers())) {
+            assertEquals(Arrays.asList(0), mapped.search(""));
+            assertEquals(Arrays.asList(1), mapped.search("d"));
+            assertEquals(Arrays.asList(14), mapped.search("de"));
+            assertEquals(Arrays.asList(23), mapped.search("deze"));
+            assertEquals(Arrays.asList(2), mapped.search("dak"));
+            assertEquals(Arrays.asList("", "d", "dak", "de", "deze"), mapped.keysWithPrefix("", 10));
+            assertEquals(5, mapped.countWithPrefix(""));
+        }
+    }
+
+    @Test
+    public void testEmptyTrie() throws IOException {
+        MappedTrie.write(root, ValueCodec.integers(), file);
+        try (MappedTrie<Integer> mapped = MappedTrie.open(file, ValueCodec.integers())) {
+            assertEquals(Collections.emptyList(), mapped.search("vos"));
+            assertEquals(0, mapped.countWithPrefix(""));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws IOException {
+        MappedTrie.write(root, ValueCodec.integers(), file);
+        try (MappedTrie<Integer> mapped = MappedTrie.open(file, ValueCodec.integers())) {
+            mapped.insert("vos", 1);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Files.write(file, "not a trie at all".getBytes());
+        MappedTrie.open(file, ValueCodec.integers());
+    }
+
+    @Test
+    public void testRejectsFilesOverTheLimit() throws IOException {
+        for (String word : Arrays.asList("vos", "vossen", "hond", "honden", "luie")) {
+            root.insert(word, word.length());
+        }
+        MappedTrie.write(root, ValueCodec.integers(), file);
+        long size = Files.size(file);
+
+        MappedTrie.write(root, ValueCodec.integers(), file, size);
+        try (MappedTrie<Integer> mapped = MappedTrie.open(file, ValueCodec.integers())) {
+            assertEquals(Arrays.asList(6), mapped.search("vossen"));
+        }
+        for (long limit : new long[]{size - 1, size / 2}) {
+            try {
+                MappedTrie.write(root, ValueCodec.integers(), file, limit);
+                fail("wrote a file over " + limit + " bytes");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains(String.valueOf(limit)));
+            }
+        }
+    }
+}
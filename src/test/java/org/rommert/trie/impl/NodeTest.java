@@ -3,8 +3,10 @@ package org.rommert.trie.impl;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.rommert.trie.interfaces.FuzzyMatch;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 
@@ -269,4 +271,363 @@ public class NodeTest {
 
         System.out.println(root.toDOTString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSearchCharSequence() {
+        root.insert("voornamelijk", 23);
+        root.insert("voornemens", 3);
+        StringBuilder word = new StringBuilder("voornemens");
+        assertEquals(Arrays.asList(3), root.search(word));
+        word.setLength(4);
+        assertEquals(Collections.emptyList(), root.search(word));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSearchResultIsReadOnly() {
+        root.insert("vos", 14);
+        root.search("vos").add(15);
+    }
+
+    @Test
+    public void testKeysWithPrefix() {
+        root.insert("voornamelijk", 23);
+        root.insert("vos", 7);
+        root.insert("voornemens", 3);
+        root.insert("voor", 12);
+        root.insert("beer", 5);
+
+        assertEquals(Arrays.asList("voor", "voornamelijk", "voornemens", "vos"), root.keysWithPrefix("v", 10));
+        assertEquals(Arrays.asList("voornamelijk", "voornemens"), root.keysWithPrefix("voorn", 10));
+        assertEquals(Arrays.asList("voornamelijk"), root.keysWithPrefix("voorna", 10));
+        assertEquals(Arrays.asList("voor", "voornamelijk"), root.keysWithPrefix("vo", 2));
+        assertEquals(Collections.emptyList(), root.keysWithPrefix("voorx", 10));
+        assertEquals(Collections.emptyList(), root.keysWithPrefix("z", 10));
+        assertEquals(5, root.countWithPrefix(""));
+        assertEquals(4, root.countWithPrefix("vo"));
+    }
+
+    @Test
+    public void testValuesWithPrefix() {
+        root.insert("los", 14);
+        root.insert("losbol", 23);
+        root.insert("los", 31);
+        root.insert("lak", 2);
+
+        List<Integer> actual = root.valuesWithPrefix("lo").collect(Collectors.toList());
+        assertEquals(Arrays.asList(14, 31, 23), actual);
+    }
+
+    @Test
+    public void testTopByValueCount() {
+        root.insert("hond", 1);
+        root.insert("hond", 2);
+        root.insert("hond", 3);
+        root.insert("hij", 4);
+        root.insert("hij", 5);
+        root.insert("heel", 6);
+        root.insert("het", 7);
+
+        List<Map.Entry<String, List<Integer>>> top = root.topByValueCount("h", 3);
+        assertEquals(3, top.size());
+        assertEquals("hond", top.get(0).getKey());
+        assertEquals("hij", top.get(1).getKey());
+        assertEquals("heel", top.get(2).getKey());
+    }
+
+    @Test
+    public void testCountersFollowInsertAndDelete() {
+        root.insert("voornamelijk", 23);
+        root.insert("voornamelijk", 24);
+        root.insert("voornemens", 3);
+        root.insert("vos", 7);
+        root.insert("beer", 5);
+
+        assertEquals(3, root.countWithPrefix("vo"));
+        assertEquals(4, root.countValuesWithPrefix("vo"));
+        assertEquals(2, root.countWithPrefix("voorn"));
+        assertEquals(1, root.countWithPrefix("voorna"));
+        assertEquals(0, root.countWithPrefix("vx"));
+
+        root.delete("voornamelijk");
+        assertEquals(2, root.countWithPrefix("vo"));
+        assertEquals(2, root.countValuesWithPrefix("vo"));
+        assertEquals(3, root.getNrOfValueNodes());
+        assertEquals(3, root.countValuesWithPrefix(""));
+    }
+
+    @Test
+    public void testFromSortedBuildsSameTreeAsInsert() {
+        Random random = new Random(3);
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(4)));
+            }
+            entries.add(new AbstractMap.SimpleEntry<>(word.toString(), i));
+            root.insert(word.toString(), i);
+        }
+
+        Node<Integer> bulk = Node.fromUnsorted(entries.stream());
+        assertEquals(root.toString(), bulk.toString());
+        assertEquals(root.getNrOfValueNodes(), bulk.getNrOfValueNodes());
+        assertEquals(root.countValuesWithPrefix("ab"), bulk.countValuesWithPrefix("ab"));
+
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(entries);
+        sorted.sort(Map.Entry.comparingByKey());
+        Node<Integer> parallel = Node.fromSortedParallel(sorted);
+        assertEquals(root.toString(), parallel.toString());
+        assertEquals(root.getNrOfValueNodes(), parallel.getNrOfValueNodes());
+    }
+
+    @Test
+    public void testFromSortedWithContainedWords() {
+        List<Map.Entry<String, Integer>> entries = Arrays.asList(
+                new AbstractMap.SimpleEntry<>("d", 1),
+                new AbstractMap.SimpleEntry<>("de", 14),
+                new AbstractMap.SimpleEntry<>("de", 15),
+                new AbstractMap.SimpleEntry<>("deze", 23),
+                new AbstractMap.SimpleEntry<>("vos", 7));
+        Node<Integer> bulk = Node.fromSorted(entries.iterator());
+        entries.forEach(entry -> root.insert(entry.getKey(), entry.getValue()));
+        assertEquals(root.toString(), bulk.toString());
+        assertEquals(Arrays.asList(14, 15), bulk.search("de"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedRejectsUnsortedInput() {
+        Node.fromSorted(Arrays.asList(
+                new AbstractMap.SimpleEntry<>("vos", 1),
+                new AbstractMap.SimpleEntry<>("beer", 2)).iterator());
+    }
+
+    @Test
+    public void testSearchFuzzy() {
+        root.insert("vos", 1);
+        root.insert("vossen", 2);
+        root.insert("vis", 3);
+        root.insert("voor", 4);
+        root.insert("hond", 5);
+        root.insert("os", 6);
+
+        assertEquals(Arrays.asList(
+                new FuzzyMatch<>("vos", 0, Arrays.asList(1)),
+                new FuzzyMatch<>("os", 1, Arrays.asList(6)),
+                new FuzzyMatch<>("vis", 1, Arrays.asList(3))), root.searchFuzzy("vos", 1));
+        assertEquals(Arrays.asList("vossen"), root.searchFuzzy("vosen", 1).stream()
+                .map(FuzzyMatch::getWord).collect(Collectors.toList()));
+        assertEquals(Collections.emptyList(), root.searchFuzzy("kat", 1));
+        assertEquals(Arrays.asList("vos"), root.searchFuzzy("vos", 0).stream()
+                .map(FuzzyMatch::getWord).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSearchFuzzyMatchesFullComparison() {
+        // ArrayTrie has the default method of Trie, which compares the word with every word in the trie
+        ArrayTrie<Integer> reference = new ArrayTrie<>();
+        Random random = new Random(15);
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(7);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(4)));
+            }
+            root.insert(word.toString(), i);
+            reference.insert(word.toString(), i);
+        }
+        for (String word : Arrays.asList("a", "abcd", "dcba", "aabbccd", "bbbbbbbbb")) {
+            for (int maxEdits = 0; maxEdits <= 3; maxEdits++) {
+                assertEquals(word + " " + maxEdits, reference.searchFuzzy(word, maxEdits),
+                        root.searchFuzzy(word, maxEdits));
+            }
+        }
+    }
+
+    @Test
+    public void testOrderedQueries() {
+        root.insert("20240101-a", 1);
+        root.insert("20240101-b", 2);
+        root.insert("20240102-a", 3);
+        root.insert("20240201-a", 4);
+        root.insert("2024", 5);
+
+        assertEquals(Arrays.asList("20240101-a", "20240101-b", "20240102-a"), root.searchRange("20240101", "20240201")
+                .map(Map.Entry::getKey).collect(Collectors.toList()));
+        assertEquals("20240102-a", root.floorKey("20240131"));
+        assertEquals("20240201-a", root.ceilingKey("20240131"));
+        assertEquals("2024", root.floorKey("20240101-"));
+        assertEquals("2024", root.ceilingKey("2024"));
+        assertEquals(null, root.floorKey("2023"));
+        assertEquals(null, root.ceilingKey("2025"));
+        assertEquals("2024", root.keyAt(0));
+        assertEquals("20240201-a", root.keyAt(4));
+    }
+
+    @Test
+    public void testOrderedQueriesMatchTreeMap() {
+        TreeMap<String, List<Integer>> reference = new TreeMap<>();
+        Random random = new Random(16);
+        for (int i = 0; i < 3000; i++) {
+            String word = randomWord(random);
+            if (random.nextInt(4) == 0) {
+                root.delete(word);
+                reference.remove(word);
+            } else {
+                root.insert(word, i);
+                reference.computeIfAbsent(word, w -> new ArrayList<>()).add(i);
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            String key = randomWord(random);
+            assertEquals(key, reference.floorKey(key), root.floorKey(key));
+            assertEquals(key, reference.ceilingKey(key), root.ceilingKey(key));
+            String to = randomWord(random);
+            if (key.compareTo(to) <= 0) {
+                List<Map.Entry<String, List<Integer>>> range = root.searchRange(key, to).collect(Collectors.toList());
+                assertEquals(key + ".." + to, new ArrayList<>(reference.subMap(key, to).entrySet()), range);
+            }
+        }
+        List<String> words = new ArrayList<>(reference.keySet());
+        for (int rank = 0; rank < words.size(); rank++) {
+            assertEquals(words.get(rank), root.keyAt(rank));
+        }
+    }
+
+    @Test
+    public void testInsertAllBuildsSameTreeAsInsert() {
+        Map<String, Integer> batch = new HashMap<>();
+        Random random = new Random(17);
+        for (int i = 0; i < 2000; i++) {
+            batch.put(randomWord(random), i);
+        }
+        root.insert("ab", -1);
+        root.insert("c", -2);
+        Node<Integer> oneByOne = new Node<>();
+        oneByOne.insert("ab", -1);
+        oneByOne.insert("c", -2);
+        new TreeMap<>(batch).forEach(oneByOne::insert);
+
+        root.insertAll(batch);
+        assertEquals(oneByOne.toString(), root.toString());
+        assertEquals(oneByOne.countValuesWithPrefix(""), root.countValuesWithPrefix(""));
+    }
+
+    @Test
+    public void testSearchAll() {
+        Random random = new Random(18);
+        for (int i = 0; i < 2000; i++) {
+            root.insert(randomWord(random), i);
+        }
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(randomWord(random));
+        }
+        batch.add("");
+        batch.add("abcabcabc");
+
+        Map<String, List<Integer>> results = root.searchAll(batch);
+        assertEquals(new ArrayList<>(new TreeSet<>(batch)), new ArrayList<>(results.keySet()));
+        results.forEach((word, values) -> assertEquals(word, root.search(word), values));
+    }
+
+    @Test
+    public void testToDOTStringUsesShortIdsAndEscapes() {
+        root.insert("vos", 1);
+        root.insert("voor", 2);
+        root.insert("voordelig", 3);
+        root.insert("\"quoted\"", 4);
+        assertEquals("digraph G\n{\n_[label=\"\"]\n"
+                + "_ -> n1\nn1[label=\"\\\"quoted\\\"[4]\"]\n"
+                + "_ -> n2\nn2[label=\"v\"]\n"
+                + "n2 -> n3\nn3[label=\"o\"]\n"
+                + "n3 -> n4\nn4[label=\"o\"]\n"
+                + "n4 -> n5\nn5[label=\"r[2]\"]\n"
+                + "n5 -> n6\nn6[label=\"delig[3]\"]\n"
+                + "n3 -> n7\nn7[label=\"s[1]\"]\n"
+                + "}", root.toDOTString());
+    }
+
+    @Test
+    public void testWriteDOTWithPrefixAndDepth() throws Exception {
+        root.insert("vos", 1);
+        root.insert("voor", 2);
+        root.insert("voordelig", 3);
+        root.insert("voorbij", 4);
+        root.insert("hond", 5);
+        StringBuilder dot = new StringBuilder();
+        root.writeDOT(dot, "voo", 1);
+        assertEquals("digraph G\n{\n_[label=\"voo\"]\n"
+                + "_ -> n1\nn1[label=\"r[2] (+2)\"]\n"
+                + "}", dot.toString());
+
+        dot.setLength(0);
+        root.writeDOT(dot, "hon", 5);
+        assertEquals("digraph G\n{\n_[label=\"hond[5]\"]\n}", dot.toString());
+
+        dot.setLength(0);
+        root.writeDOT(dot, "kat", 5);
+        assertEquals("digraph G\n{\n}", dot.toString());
+    }
+
+    /**
+     * A trie thousands of levels deep, printed on a thread with a small stack
+     */
+    @Test
+    public void testCopyWithPrefixResumesAfterWord() {
+        List<String> words = Arrays.asList("vos", "voshol", "vossen", "voor", "voordelig", "vogel", "hond", "v");
+        for (int i = 0; i < words.size(); i++) {
+            root.insert(words.get(i), i);
+        }
+        List<String> read = new ArrayList<>();
+        String after = null;
+        List<Map.Entry<String, List<Integer>>> chunk;
+        do {
+            chunk = root.copyWithPrefix("vo", after, 2);
+            for (Map.Entry<String, List<Integer>> entry : chunk) {
+                read.add(entry.getKey());
+                after = entry.getKey();
+            }
+        } while (chunk.size() == 2);
+        assertEquals(Arrays.asList("vogel", "voor", "voordelig", "vos", "voshol", "vossen"), read);
+        // a word that is not in the trie works as well
+        assertEquals("voshol", root.copyWithPrefix("", "vosa", 1).get(0).getKey());
+        assertEquals(Collections.emptyList(), root.copyWithPrefix("", "w", 10));
+        assertEquals(Arrays.asList(0), root.copyWithPrefix("vos", null, 1).get(0).getValue());
+    }
+
+    @Test
+    public void testDeepTrieDoesNotOverflowStack() throws Exception {
+        int depth = 3000;
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            word.append('a');
+        }
+        // a b branching off at every level, in sorted order
+        for (int i = depth; i >= 0; i--) {
+            word.setLength(i);
+            entries.add(new AbstractMap.SimpleEntry<>(word + "b", i));
+        }
+        Node<Integer> deep = Node.fromSorted(entries.iterator());
+        String[] output = new String[2];
+        Thread thread = new Thread(null, () -> {
+            output[0] = deep.toDOTString();
+            output[1] = deep.toString();
+        }, "small stack", 128 * 1024);
+        thread.start();
+        thread.join();
+        // an a and a b below every level but the last, where ab is one leaf
+        assertEquals(2 * depth, output[0].split(" -> ").length - 1);
+        assertEquals(2 * depth + 1, output[1].split(":\n", -1).length - 1);
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int j = 0; j < length; j++) {
+            word.append((char) ('a' + random.nextInt(3)));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,217 @@
+package org.rommert.trie.impl;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+@SuppressWarnings("SpellCheckingInspection")
+public class ShardedTrieTest {
+
+    private ShardedTrie<Integer> root;
+
+    @Before
+    public void setup() {
+        root = new ShardedTrie<>(3);
+    }
+
+    @After
+    public void tearDown() {
+        root.close();
+    }
+
+    @Test
+    public void testInsertSearchDelete() {
+        root.insert("vos", 1);
+        root.insert("voshol", 2);
+        root.insert("hond", 3);
+        root.insert("vos", 4);
+        root.flush();
+        assertEquals(Arrays.asList(1, 4), root.search("vos"));
+        assertEquals(Arrays.asList(2), root.search(new StringBuilder("voshol")));
+        assertEquals(Arrays.asList(3), root.search("hond"));
+        assertEquals(Collections.emptyList(), root.search("kat"));
+        assertEquals(Collections.emptyList(), root.search(""));
+
+        root.delete("vos");
+        root.flush();
+        assertEquals(Collections.emptyList(), root.search("vos"));
+        assertEquals(Arrays.asList(2), root.search("voshol"));
+    }
+
+    @Test
+    public void testPrefixIteratorMergesShardsInOrder() {
+        List<String> words = Arrays.asList("appel", "banaan", "citroen", "dadel", "aap", "bes", "cactus", "vos");
+        for (int i = 0; i < words.size(); i++) {
+            root.insert(words.get(i), i);
+        }
+        root.flush();
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted);
+        List<String> found = new ArrayList<>();
+        root.prefixIterator("").forEachRemaining(entry -> found.add(entry.getKey()));
+        assertEquals(sorted, found);
+        assertEquals(8, root.countWithPrefix(""));
+
+        // a prefix of the sharding key length is answered by one shard
+        List<String> withB = new ArrayList<>();
+        root.prefixIterator("b").forEachRemaining(entry -> withB.add(entry.getKey()));
+        assertEquals(Arrays.asList("banaan", "bes"), withB);
+        assertEquals(2, root.countWithPrefix("b"));
+        assertEquals(0, root.countWithPrefix("x"));
+    }
+
+    /**
+     * Enough words for several chunks per shard, and changes between reads that the iterator may or may not see,
+     * but that never make it repeat or skip a word that was there all along
+     */
+    @Test
+    public void testPrefixIteratorReadsChunks() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            words.add(Integer.toString(i, 36));
+            root.insert(words.get(i), i);
+        }
+        root.flush();
+        Collections.sort(words);
+        assertEquals(words.subList(0, 10), root.keysWithPrefix("", 10));
+        Iterator<Map.Entry<String, List<Integer>>> iterator = root.prefixIterator("");
+        List<String> found = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            found.add(iterator.next().getKey());
+        }
+        root.insert("00", -1);
+        root.insert("zzzz", -1);
+        root.flush();
+        iterator.forEachRemaining(entry -> found.add(entry.getKey()));
+        found.remove("zzzz");
+        assertEquals(words, found);
+    }
+
+    @Test
+    public void testLongerShardingKey() {
+        ShardedTrie<Integer> trie = new ShardedTrie<>(4, 2);
+        try {
+            trie.insert("vos", 1);
+            trie.insert("vogel", 2);
+            trie.insert("v", 3);
+            trie.insert("hond", 4);
+            trie.flush();
+            assertEquals(Arrays.asList(3), trie.search("v"));
+            assertEquals(3, trie.countWithPrefix("v"));
+            assertEquals(1, trie.countWithPrefix("vos"));
+            List<String> found = new ArrayList<>();
+            trie.prefixIterator("v").forEachRemaining(entry -> found.add(entry.getKey()));
+            assertEquals(Arrays.asList("v", "vogel", "vos"), found);
+        } finally {
+            trie.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        int threads = 4;
+        int perThread = 5000;
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            Thread producer = new Thread(() -> {
+                for (int i = offset; i < offset + perThread; i++) {
+                    root.insert(Integer.toString(i, 36), i);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        root.flush();
+        assertEquals(threads * perThread, root.countWithPrefix(""));
+        for (int i = 0; i < threads * perThread; i++) {
+            assertEquals(Collections.singletonList(i), root.search(Integer.toString(i, 36)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyWordIsRejected() {
+        root.insert("", 1);
+    }
+
+    @Test
+    public void testClosedTrieRejectsChanges() {
+        root.insert("vos", 1);
+        root.close();
+        assertEquals(Arrays.asList(1), root.search("vos"));
+        // closing twice does nothing
+        root.close();
+        try {
+            root.insert("hond", 2);
+            fail("insert after close should fail");
+        } catch (IllegalStateException expected) {
+            // the trie is closed
+        }
+        try {
+            root.flush();
+            fail("flush after close should fail");
+        } catch (IllegalStateException expected) {
+            // the trie is closed
+        }
+    }
+
+    /**
+     * Producers keep inserting while the trie is closed: every insert either fails or is applied before close
+     * returns, none is accepted and then dropped
+     */
+    @Test
+    public void testCloseDuringInsertsDropsNothing() throws InterruptedException {
+        int threads = 4;
+        AtomicLong accepted = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 1_000_000;
+            Thread producer = new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = offset; ; i++) {
+                        root.insert(Integer.toString(i, 36), i);
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException closed) {
+                    // done
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        started.await();
+        root.close();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(accepted.get(), root.countWithPrefix(""));
+    }
+
+    @Test
+    public void testToDOTString() {
+        root.insert("vos", 1);
+        root.insert("voshol", 2);
+        root.flush();
+        String dot = root.toDOTString();
+        assertTrue(dot.startsWith("digraph G\n{\n_[label=\"\"]\n"));
+        assertTrue(dot.endsWith("}"));
+        int shard = 'v' % 3;
+        assertTrue(dot, dot.contains("s" + shard + " -> s" + shard + "n1\n"));
+        assertTrue(dot, dot.contains("s" + shard + "n1 -> s" + shard + "n2\n"));
+    }
+}